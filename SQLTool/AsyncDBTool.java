@@ -0,0 +1,168 @@
+package SQLTool;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// DBConnectionTool 的异步门面: 在执行器上运行并返回 CompletableFuture
+// 默认每个任务一个虚拟线程, 同时执行的任务数不超过连接池最大连接数, 其余任务排队等待许可
+// 异步任务不继承调用线程的 ThreadLocal 事务, 事务操作通过显式的 TransactionContext 传递
+// 任务在提交时的当前 Database 实例上执行
+public class AsyncDBTool {
+    private AsyncDBTool() {}
+
+    private static volatile Executor executor;
+    private static ExecutorService defaultExecutor;
+
+
+//    设置执行器, 传 null 恢复默认的虚拟线程执行器
+
+    public static void setExecutor(Executor e) {
+        executor = e;
+    }
+
+    public static Executor getExecutor() {
+        Executor e = executor;
+        return e != null ? e : defaultExecutor();
+    }
+
+    private static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sqltool-async-", 0).factory());
+        }
+        return defaultExecutor;
+    }
+
+
+//    关闭默认执行器, 已提交的任务继续执行完
+
+    public static synchronized void shutdown() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+    }
+
+    public static <T> CompletableFuture<List<T>> query(String sql, RowMapper<T> mapper, Object... params) {
+        return submit(db -> db.query((Connection) null, sql, mapper, params));
+    }
+
+    public static CompletableFuture<Integer> executeUpdate(String sql, Object... params) {
+        return submit(db -> db.executeUpdate((Connection) null, sql, params));
+    }
+
+    public static CompletableFuture<int[]> executeBatch(String sql, List<Object[]> paramsList) {
+        return executeBatch(sql, paramsList, Database.current().getBatchSize(), 0);
+    }
+
+    public static CompletableFuture<int[]> executeBatch(String sql, List<Object[]> paramsList, int chunkSize, int commitInterval) {
+        return submit(db -> db.executeBatch((Connection) null, sql, paramsList, Function.identity(),
+                chunkSize, commitInterval));
+    }
+
+
+//    在显式事务上下文中异步执行, 事务已持有连接, 不再占用许可
+
+    public static <T> CompletableFuture<List<T>> query(TransactionContext tx, String sql, RowMapper<T> mapper, Object... params) {
+        return CompletableFuture.supplyAsync(() -> tx.query(sql, mapper, params), getExecutor());
+    }
+
+    public static CompletableFuture<Integer> executeUpdate(TransactionContext tx, String sql, Object... params) {
+        return CompletableFuture.supplyAsync(() -> tx.executeUpdate(sql, params), getExecutor());
+    }
+
+    public static CompletableFuture<int[]> executeBatch(TransactionContext tx, String sql, List<Object[]> paramsList) {
+        return CompletableFuture.supplyAsync(() -> tx.executeBatch(sql, paramsList), getExecutor());
+    }
+
+
+//    在一个事务中执行 work, 正常返回时提交, 抛出异常时回滚
+//    work 中不要再等待其他非事务异步操作, 所有许可都被事务占用时会互相等待
+
+    public static <T> CompletableFuture<T> inTransaction(Function<TransactionContext, T> work) {
+        return submit(db -> {
+            try (TransactionContext tx = TransactionContext.begin(db)) {
+                T result = work.apply(tx);
+                tx.commit();
+                return result;
+            }
+        });
+    }
+
+
+//    work 返回的阶段完成后提交, 异常完成时回滚; 事务期间一直占用一个许可
+
+    public static <T> CompletableFuture<T> inTransactionAsync(Function<TransactionContext, ? extends CompletionStage<T>> work) {
+        Database db = Database.current();
+        Semaphore permits = db.getAsyncPermits();
+        Executor e = getExecutor();
+        return CompletableFuture.supplyAsync(() -> {
+            acquire(permits);
+            try {
+                return TransactionContext.begin(db);
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+        }, e).thenCompose(tx -> {
+            CompletionStage<T> stage;
+            try {
+                stage = work.apply(tx);
+            } catch (RuntimeException ex) {
+                stage = CompletableFuture.failedFuture(ex);
+            }
+            return stage.handleAsync((result, error) -> {
+                try {
+                    if (error == null) {
+                        tx.commit();
+                        return result;
+                    }
+                    try {
+                        tx.rollback();
+                    } catch (RuntimeException rollbackEx) {
+                        error.addSuppressed(rollbackEx);
+                    }
+                    throw error instanceof CompletionException ce ? ce : new CompletionException(error);
+                } finally {
+                    permits.release();
+                }
+            }, e);
+        });
+    }
+
+//    在当前实例上异步执行 action(块内静态入口作用于该实例), 与其他异步任务共用许可; 供并行扫描使用
+
+    static <T> CompletableFuture<T> supply(Supplier<T> action) {
+        return submit(db -> db.call(action));
+    }
+
+    private static <T> CompletableFuture<T> submit(Function<Database, T> task) {
+        Database db = Database.current();
+        Semaphore permits = db.getAsyncPermits();
+        return CompletableFuture.supplyAsync(() -> {
+            acquire(permits);
+            try {
+                return task.apply(db);
+            } finally {
+                permits.release();
+            }
+        }, getExecutor());
+    }
+
+    private static void acquire(Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JDBCException("等待执行许可时被中断", e);
+        }
+    }
+}
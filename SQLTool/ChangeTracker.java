@@ -0,0 +1,118 @@
+package SQLTool;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 实体变更跟踪: 开启跟踪的实体类经 EntityMapper 加载时保存字段值快照,
+// DMLTool.update 只更新与快照不同的列, 没有变化时不访问数据库
+// 快照按对象身份弱引用保存在并发哈希表中, 实体被回收后自动清除; 提交成功后快照更新为写入的值
+// 映射和更新线程之间不共用锁, 也不会在 synchronized 中固定虚拟线程
+public class ChangeTracker {
+    private ChangeTracker() {}
+
+    private static final Set<Class<?>> enabledClasses = ConcurrentHashMap.newKeySet();
+    private static final Map<IdentityKey, Object[]> snapshots = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    public static void enable(Class<?> entityClass) {
+        enabledClasses.add(entityClass);
+    }
+
+    public static void disable(Class<?> entityClass) {
+        enabledClasses.remove(entityClass);
+    }
+
+    public static boolean isEnabled(Class<?> entityClass) {
+        return !enabledClasses.isEmpty() && enabledClasses.contains(entityClass);
+    }
+
+    public static boolean isTracked(Object entity) {
+        expunge();
+        return snapshots.containsKey(new IdentityKey(entity, null));
+    }
+
+
+//    停止跟踪实体, 之后 update 恢复为更新全部列
+
+    public static void detach(Object entity) {
+        expunge();
+        snapshots.remove(new IdentityKey(entity, null));
+    }
+
+
+//    保存实体当前字段值作为快照
+
+    static void track(Object entity, EntityMetadata meta) {
+        snapshot(entity, meta.getValues(entity, 0), meta.getProperties().size());
+    }
+
+    static void snapshot(Object entity, Object[] values, int length) {
+        Object[] copy = new Object[length];
+        for (int i = 0; i < length; i++) {
+            // byte[] 可能被原地修改, 快照保存副本
+            copy[i] = values[i] instanceof byte[] bytes ? bytes.clone() : values[i];
+        }
+        expunge();
+        snapshots.put(new IdentityKey(entity, queue), copy);
+    }
+
+
+//    与快照比较, 返回值不同的字段下标; 实体未被跟踪时返回 null
+
+    static BitSet changedColumns(Object entity, Object[] values) {
+        expunge();
+        Object[] snapshot = snapshots.get(new IdentityKey(entity, null));
+        if (snapshot == null) {
+            return null;
+        }
+        BitSet changed = new BitSet(snapshot.length);
+        for (int i = 0; i < snapshot.length; i++) {
+            if (!Objects.deepEquals(snapshot[i], values[i])) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    public static int size() {
+        expunge();
+        return snapshots.size();
+    }
+
+    // 清除已被回收实体的快照; 键按引用本身相等, 只会删除对应的条目
+    private static void expunge() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            snapshots.remove(ref);
+        }
+    }
+
+    // 按对象身份比较的弱引用键
+    private static final class IdentityKey extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IdentityKey other)) return false;
+            Object referent = get();
+            return referent != null && referent == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
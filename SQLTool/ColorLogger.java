@@ -1,9 +1,16 @@
 package SQLTool;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ColorLogger {
     // ANSI 颜色代码
@@ -31,12 +38,37 @@ public class ColorLogger {
     private static final String BOLD = "\u001B[1m";//加粗
     private static final String UNDERLINE = "\u001B[4m";//下划线
 
-    private static boolean enabled = true;
-    private static boolean colorEnabled = true;
-    private static boolean timestampEnabled = true;
+    // 日志级别
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    // 异步缓冲区满时的处理策略: 丢弃新日志或阻塞调用线程
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static volatile boolean enabled = true;
+    private static volatile boolean colorEnabled = true;
+    private static volatile boolean timestampEnabled = true;
+    private static volatile Level level = Level.DEBUG;
+    // 参数数组最多打印的元素个数
+    private static volatile int maxParams = 50;
     private static final DateTimeFormatter formatter =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
+    // 异步模式
+    private static volatile AsyncWriter asyncWriter;
+    private static final LongAdder dropped = new LongAdder();
+    private static boolean shutdownHookInstalled;
+
+    // 事件类型
+    private static final int SQL = 0;
+    private static final int TRANSACTION = 1;
+    private static final int DDL = 2;
+    private static final int BATCH = 3;
+    private static final int BATCH_SUMMARY = 4;
+    private static final int RESULT = 5;
+    private static final int RESULTS = 6;
+    private static final int BATCH_RESULT = 7;
+    private static final int ERROR = 8;
+
     public static void enable() {
         enabled = true;
     }
@@ -61,94 +93,217 @@ public class ColorLogger {
         timestampEnabled = false;
     }
 
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level target) {
+        return enabled && target != Level.OFF && target.compareTo(level) >= 0;
+    }
+
+    public static void setMaxParams(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("参数打印个数不能小于0");
+        }
+        maxParams = max;
+    }
+
+
+//    开启异步日志: 调用线程只把事件放入有界缓冲区, 由后台线程格式化并输出
+
+    public static synchronized void enableAsync(int capacity, OverflowPolicy policy) {
+        disableAsync();
+        if (!shutdownHookInstalled) {
+            // 进程退出前输出缓冲区中剩余的日志
+            Runtime.getRuntime().addShutdownHook(new Thread(ColorLogger::disableAsync, "SQLTool-log-flush"));
+            shutdownHookInstalled = true;
+        }
+        AsyncWriter writer = new AsyncWriter(capacity, policy);
+        writer.start();
+        asyncWriter = writer;
+    }
+
+
+//    关闭异步日志并输出缓冲区中剩余的日志
+
+    public static synchronized void disableAsync() {
+        AsyncWriter writer = asyncWriter;
+        asyncWriter = null;
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    // 异步模式下被丢弃的日志条数
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
     public static void logSQL(String sql) {
-        if (!enabled) return;
-        String prefix = timestampEnabled ?
-                getColoredTimestamp() + colorText(" SQL: ", CYAN + BOLD) :
-                colorText("SQL: ", CYAN + BOLD);
-        System.out.println(prefix + colorText(sql, CYAN));
+        if (!isEnabled(Level.DEBUG)) return;
+        publish(new LogEvent(SQL, sql, null, 0, 0, null));
     }
 
     public static void logSQL(String sql, Object... params) {
-        if (!enabled) return;
-        logSQL(sql);
-        if (params != null && params.length > 0) {
-            String paramPrefix = timestampEnabled ?
-                    getColoredTimestamp() + colorText(" PARAMS: ", PURPLE + BOLD) :
-                    colorText("PARAMS: ", PURPLE + BOLD);
-            String paramStr = Arrays.toString(params);
-            System.out.println(paramPrefix + colorText(paramStr, PURPLE));
-        }
+        if (!isEnabled(Level.DEBUG)) return;
+        publish(new LogEvent(SQL, sql, truncate(params), params == null ? 0 : params.length, 0, null));
     }
 
     public static void logTransaction(String action) {
-        if (!enabled) return;
-        String prefix = timestampEnabled ?
-                getColoredTimestamp() : "";
-        String coloredAction = colorText(" TRANSACTION: " + action, BLUE + BOLD);
-        System.out.println(prefix + coloredAction);
+        if (!isEnabled(Level.INFO)) return;
+        publish(new LogEvent(TRANSACTION, action, null, 0, 0, null));
     }
 
     public static void logDDL(String ddl) {
-        if (!enabled) return;
-        String prefix = timestampEnabled ?
-                getColoredTimestamp() + colorText(" DDL: ", YELLOW + BOLD) :
-                colorText("DDL: ", YELLOW + BOLD);
-        System.out.println(prefix + colorText(ddl, YELLOW));
+        if (!isEnabled(Level.INFO)) return;
+        publish(new LogEvent(DDL, ddl, null, 0, 0, null));
     }
 
     public static void logBatch(String sql, List<Object[]> paramList) {
-        if (!enabled) return;
-        logSQL("BATCH: " + sql);
+        if (!isEnabled(Level.DEBUG)) return;
+        Object[] rows = null;
+        int size = 0;
         if (paramList != null && !paramList.isEmpty()) {
-            for (int i = 0; i < paramList.size(); i++) {
-                String batchPrefix = timestampEnabled ?
-                        getColoredTimestamp() + colorText(" BATCH[" + (i+1) + "]: ", GREEN + BOLD) :
-                        colorText("BATCH[" + (i+1) + "]: ", GREEN + BOLD);
-                String paramStr = Arrays.toString(paramList.get(i));
-                System.out.println(batchPrefix + colorText(paramStr, GREEN));
+            size = paramList.size();
+            rows = new Object[Math.min(size, maxParams)];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = truncate(paramList.get(i));
             }
         }
+        publish(new LogEvent(BATCH, sql, rows, size, 0, null));
+    }
+
+    public static void logBatch(String sql, int rowCount, int chunkSize) {
+        if (!isEnabled(Level.DEBUG)) return;
+        publish(new LogEvent(BATCH_SUMMARY, sql, null, rowCount, chunkSize, null));
     }
 
     public static void logResult(int rowCount) {
-        if (!enabled) return;
-        String prefix = timestampEnabled ?
-                getColoredTimestamp() + colorText(" RESULT: ", GREEN + BOLD) :
-                colorText("RESULT: ", GREEN + BOLD);
-        String resultText = rowCount + (rowCount == 1 ? " row affected" : " rows affected");
-        System.out.println(prefix + colorText(resultText, GREEN));
+        if (!isEnabled(Level.DEBUG)) return;
+        publish(new LogEvent(RESULT, null, null, rowCount, 0, null));
     }
 
     public static void logResults(int rowCounts) {
-        if (!enabled) return;
-        String prefix = timestampEnabled ?
-                getColoredTimestamp() + colorText(" BATCH RESULT: ", BG_GREEN + BLACK + BOLD) :
-                colorText("BATCH RESULT: ", BG_GREEN + BLACK + BOLD);
-        String resultText = rowCounts + " batches, " + rowCounts + " total rows affected";
-        System.out.println(prefix + colorText(resultText, BG_GREEN + BLACK));
+        if (!isEnabled(Level.DEBUG)) return;
+        publish(new LogEvent(RESULTS, null, null, rowCounts, 0, null));
+    }
+
+    public static void logBatchResult(int chunks, long totalRows) {
+        if (!isEnabled(Level.DEBUG)) return;
+        publish(new LogEvent(BATCH_RESULT, null, null, chunks, totalRows, null));
     }
 
     public static void logError(String sql, Throwable e) {
-        if (!enabled) return;
-        String prefix = timestampEnabled ?
-                getColoredTimestamp() + colorText(" ERROR: ", BG_RED + WHITE + BOLD) :
-                colorText("ERROR: ", BG_RED + WHITE + BOLD);
-        System.out.println(prefix + colorText(e.getMessage(), RED + BOLD));
-        System.out.println(colorText("SQL: " + sql, RED));
+        if (!isEnabled(Level.ERROR)) return;
+        publish(new LogEvent(ERROR, sql, null, 0, 0, e));
+    }
+
+    // 复制参数数组的前 maxParams 个元素, 调用方之后修改数组不影响日志
+    private static Object[] truncate(Object[] params) {
+        if (params == null || params.length == 0) {
+            return params;
+        }
+        return Arrays.copyOf(params, Math.min(params.length, maxParams));
+    }
+
+    private static void publish(LogEvent event) {
+        AsyncWriter writer = asyncWriter;
+        if (writer != null && writer.offer(event)) {
+            return;
+        }
+        System.out.print(format(event, new StringBuilder(128)));
+    }
+
+
+//    格式化日志事件（同步模式在调用线程执行, 异步模式在后台线程执行）
+
+    private static StringBuilder format(LogEvent event, StringBuilder sb) {
+        switch (event.kind) {
+            case SQL -> {
+                line(sb, event, "SQL", CYAN + BOLD, event.text, CYAN);
+                if (event.params != null && event.params.length > 0) {
+                    line(sb, event, "PARAMS", PURPLE + BOLD, paramsText(event.params, event.count), PURPLE);
+                }
+            }
+            case TRANSACTION -> {
+                if (timestampEnabled) {
+                    sb.append(coloredTimestamp(event.time));
+                }
+                sb.append(colorText(" TRANSACTION: " + event.text, BLUE + BOLD)).append(System.lineSeparator());
+            }
+            case DDL -> line(sb, event, "DDL", YELLOW + BOLD, event.text, YELLOW);
+            case BATCH -> {
+                line(sb, event, "SQL", CYAN + BOLD, "BATCH: " + event.text, CYAN);
+                if (event.params != null) {
+                    for (int i = 0; i < event.params.length; i++) {
+                        Object[] row = (Object[]) event.params[i];
+                        line(sb, event, "BATCH[" + (i + 1) + "]", GREEN + BOLD,
+                                paramsText(row, row == null ? 0 : row.length), GREEN);
+                    }
+                    if (event.count > event.params.length) {
+                        line(sb, event, "BATCH", GREEN + BOLD,
+                                "... " + (event.count - event.params.length) + " more", GREEN);
+                    }
+                }
+            }
+            case BATCH_SUMMARY -> {
+                line(sb, event, "SQL", CYAN + BOLD, "BATCH: " + event.text, CYAN);
+                line(sb, event, "BATCH", GREEN + BOLD,
+                        event.count + " rows, chunk size " + event.count2, GREEN);
+            }
+            case RESULT -> line(sb, event, "RESULT", GREEN + BOLD,
+                    event.count + (event.count == 1 ? " row affected" : " rows affected"), GREEN);
+            case RESULTS -> line(sb, event, "BATCH RESULT", BG_GREEN + BLACK + BOLD,
+                    event.count + " batches, " + event.count + " total rows affected", BG_GREEN + BLACK);
+            case BATCH_RESULT -> line(sb, event, "BATCH RESULT", BG_GREEN + BLACK + BOLD,
+                    event.count + " batches, " + event.count2 + " total rows affected", BG_GREEN + BLACK);
+            case ERROR -> formatError(sb, event);
+            default -> throw new IllegalStateException("未知日志类型: " + event.kind);
+        }
+        return sb;
+    }
+
+    private static void formatError(StringBuilder sb, LogEvent event) {
+        Throwable e = event.error;
+        String nl = System.lineSeparator();
+        line(sb, event, "ERROR", BG_RED + WHITE + BOLD, e.getMessage(), RED + BOLD);
+        sb.append(colorText("SQL: " + event.text, RED)).append(nl);
 
         // 只打印关键堆栈
         StackTraceElement[] stack = e.getStackTrace();
         for (int i = 0; i < Math.min(3, stack.length); i++) {
-            System.out.println(colorText("    at " + stack[i], RED));
+            sb.append(colorText("    at " + stack[i], RED)).append(nl);
         }
         if (stack.length > 3) {
-            System.out.println(colorText("    ... " + (stack.length - 3) + " more", RED));
+            sb.append(colorText("    ... " + (stack.length - 3) + " more", RED)).append(nl);
         }
     }
 
-    private static String getColoredTimestamp() {
-        return colorText("[" + LocalDateTime.now().format(formatter) + "]", WHITE + BOLD);
+    private static void line(StringBuilder sb, LogEvent event, String label, String labelColor,
+                             String text, String textColor) {
+        if (timestampEnabled) {
+            sb.append(coloredTimestamp(event.time)).append(colorText(" " + label + ": ", labelColor));
+        } else {
+            sb.append(colorText(label + ": ", labelColor));
+        }
+        sb.append(colorText(text, textColor)).append(System.lineSeparator());
+    }
+
+    private static String paramsText(Object[] params, long total) {
+        String text = Arrays.toString(params);
+        if (total > params.length) {
+            text = text.substring(0, text.length() - 1) + ", ... " + (total - params.length) + " more]";
+        }
+        return text;
+    }
+
+    private static String coloredTimestamp(long time) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        return colorText("[" + dateTime.format(formatter) + "]", WHITE + BOLD);
     }
 
     private static String colorText(String text, String colorCode) {
@@ -157,4 +312,101 @@ public class ColorLogger {
         }
         return text;
     }
+
+    // 日志事件, 只保存原始数据, 格式化推迟到输出时
+    private static final class LogEvent {
+        final long time = System.currentTimeMillis();
+        final int kind;
+        final String text;
+        final Object[] params;
+        final long count;
+        final long count2;
+        final Throwable error;
+
+        LogEvent(int kind, String text, Object[] params, long count, long count2, Throwable error) {
+            this.kind = kind;
+            this.text = text;
+            this.params = params;
+            this.count = count;
+            this.count2 = count2;
+            this.error = error;
+        }
+    }
+
+    // 后台写日志线程, 有界环形缓冲区
+    private static final class AsyncWriter extends Thread {
+        private final BlockingQueue<LogEvent> buffer;
+        private final OverflowPolicy policy;
+        private volatile boolean running = true;
+
+        AsyncWriter(int capacity, OverflowPolicy policy) {
+            super("SQLTool-log-writer");
+            setDaemon(true);
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.policy = policy;
+        }
+
+        // 返回 false 表示写线程已停止, 由调用线程同步输出
+        boolean offer(LogEvent event) {
+            if (!running) {
+                return false;
+            }
+            if (policy == OverflowPolicy.BLOCK) {
+                try {
+                    buffer.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+            } else if (!buffer.offer(event)) {
+                dropped.increment();
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            List<LogEvent> drained = new ArrayList<>(256);
+            StringBuilder sb = new StringBuilder(8192);
+            while (running || !buffer.isEmpty()) {
+                try {
+                    LogEvent first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    drained.add(first);
+                    buffer.drainTo(drained, 255);
+                    for (LogEvent event : drained) {
+                        format(event, sb);
+                    }
+                    System.out.print(sb);
+                } catch (InterruptedException e) {
+                    running = false;
+                } catch (RuntimeException e) {
+                    // 单条日志格式化失败不影响后续日志
+                    e.printStackTrace();
+                } finally {
+                    drained.clear();
+                    sb.setLength(0);
+                }
+            }
+            System.out.flush();
+        }
+
+        void shutdown() {
+            running = false;
+            try {
+                join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // 停止过程中仍进入缓冲区的日志由当前线程输出
+            LogEvent event;
+            StringBuilder sb = new StringBuilder();
+            while ((event = buffer.poll()) != null) {
+                format(event, sb);
+            }
+            System.out.print(sb);
+        }
+    }
 }
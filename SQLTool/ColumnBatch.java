@@ -0,0 +1,428 @@
+package SQLTool;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 列式查询结果: 数值列存入 long[]/int[]/double[], 字符串列按字典编码存 int 编号, 读取时不装箱
+// 每列按 CHUNK_SIZE 行分块增长, 扩容时不复制已有数据; NULL 用位图记录
+public final class ColumnBatch {
+    static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public enum ColumnType {
+        LONG, INT, DOUBLE, STRING, OBJECT
+    }
+
+    private final String[] names;
+    private final Column[] columns;
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private int rowCount;
+
+    private ColumnBatch(String[] names, Column[] columns) {
+        this.names = names;
+        this.columns = columns;
+        for (int i = 0; i < names.length; i++) {
+            nameIndex.putIfAbsent(names[i].toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+
+//    按结果集元数据确定列类型
+//    DECIMAL/NUMERIC 小数位为 0 且精度在 1 到 18 之间时按 long 存储, 其他声明了精度的按 double 存储(可能损失精度)
+//    未声明精度(精度为 0, 如 PostgreSQL 的 numeric 及 avg/sum 结果)时按对象存储, 保留 BigDecimal 原值
+
+    static ColumnBatch forResultSet(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int count = meta.getColumnCount();
+        String[] names = new String[count];
+        Column[] columns = new Column[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = meta.getColumnLabel(i + 1);
+            columns[i] = switch (meta.getColumnType(i + 1)) {
+                case Types.BIGINT -> new LongColumn();
+                case Types.INTEGER, Types.SMALLINT, Types.TINYINT, Types.BOOLEAN, Types.BIT -> new IntColumn();
+                case Types.DOUBLE, Types.FLOAT, Types.REAL -> new DoubleColumn();
+                case Types.DECIMAL, Types.NUMERIC -> decimalColumn(meta.getPrecision(i + 1), meta.getScale(i + 1));
+                case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+                     Types.LONGNVARCHAR -> new StringColumn();
+                default -> new ObjectColumn();
+            };
+        }
+        return new ColumnBatch(names, columns);
+    }
+
+    private static Column decimalColumn(int precision, int scale) {
+        if (precision <= 0) {
+            return new ObjectColumn();
+        }
+        return scale == 0 && precision <= 18 ? new LongColumn() : new DoubleColumn();
+    }
+
+    // 读取结果集当前行追加到各列
+    void append(ResultSet rs) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].read(rs, i + 1, rowCount);
+        }
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    // 按列标签查找下标(不区分大小写), 不存在返回 -1
+    public int getColumnIndex(String name) {
+        Integer index = nameIndex.get(name.toLowerCase(Locale.ROOT));
+        return index == null ? -1 : index;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columns[column].type();
+    }
+
+    public boolean isNull(int column, int row) {
+        checkRow(row);
+        return columns[column].isNull(row);
+    }
+
+    // NULL 返回 0
+    public long getLong(int column, int row) {
+        checkRow(row);
+        return switch (columns[column]) {
+            case LongColumn c -> c.get(row);
+            case IntColumn c -> c.get(row);
+            default -> throw typeMismatch(column, "long");
+        };
+    }
+
+    public int getInt(int column, int row) {
+        checkRow(row);
+        if (columns[column] instanceof IntColumn c) {
+            return c.get(row);
+        }
+        throw typeMismatch(column, "int");
+    }
+
+    public double getDouble(int column, int row) {
+        checkRow(row);
+        return switch (columns[column]) {
+            case DoubleColumn c -> c.get(row);
+            case LongColumn c -> c.get(row);
+            case IntColumn c -> c.get(row);
+            default -> throw typeMismatch(column, "double");
+        };
+    }
+
+    public String getString(int column, int row) {
+        checkRow(row);
+        if (columns[column] instanceof StringColumn c) {
+            return c.get(row);
+        }
+        Object value = getObject(column, row);
+        return value == null ? null : value.toString();
+    }
+
+    // 字典编码列的编号, NULL 返回 -1
+    public int getCode(int column, int row) {
+        checkRow(row);
+        if (columns[column] instanceof StringColumn c) {
+            return c.code(row);
+        }
+        throw typeMismatch(column, "string");
+    }
+
+    // 字典编码列的全部取值, 下标即编号
+    public List<String> getDictionary(int column) {
+        if (columns[column] instanceof StringColumn c) {
+            return List.copyOf(c.dictionary);
+        }
+        throw typeMismatch(column, "string");
+    }
+
+    // 任意列的装箱值, NULL 返回 null
+    public Object getObject(int column, int row) {
+        checkRow(row);
+        Column c = columns[column];
+        return c.isNull(row) ? null : c.box(row);
+    }
+
+    // 复制为连续数组, NULL 为 0
+    public long[] toLongArray(int column) {
+        long[] result = new long[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            result[row] = getLong(column, row);
+        }
+        return result;
+    }
+
+    public int[] toIntArray(int column) {
+        if (!(columns[column] instanceof IntColumn c)) {
+            throw typeMismatch(column, "int");
+        }
+        return c.copy(rowCount);
+    }
+
+    public double[] toDoubleArray(int column) {
+        if (columns[column] instanceof DoubleColumn c) {
+            return c.copy(rowCount);
+        }
+        double[] result = new double[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            result[row] = getDouble(column, row);
+        }
+        return result;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("行号越界: " + row + ", 行数: " + rowCount);
+        }
+    }
+
+    private JDBCException typeMismatch(int column, String expected) {
+        return new JDBCException("列 " + names[column] + " 的类型为 " + columns[column].type() + ", 不能按 " + expected + " 读取");
+    }
+
+    // 单列存储, 数据和 NULL 位图都按块分配
+    private abstract static class Column {
+        private long[][] nulls = new long[8][];
+
+        abstract ColumnType type();
+
+        abstract void read(ResultSet rs, int index, int row) throws SQLException;
+
+        abstract Object box(int row);
+
+        final void markNull(int row) {
+            int chunk = row >>> CHUNK_BITS;
+            nulls = ensureChunk(nulls, chunk);
+            if (nulls[chunk] == null) {
+                nulls[chunk] = new long[CHUNK_SIZE / 64];
+            }
+            int offset = row & CHUNK_MASK;
+            nulls[chunk][offset >>> 6] |= 1L << offset;
+        }
+
+        final boolean isNull(int row) {
+            int chunk = row >>> CHUNK_BITS;
+            if (chunk >= nulls.length || nulls[chunk] == null) {
+                return false;
+            }
+            int offset = row & CHUNK_MASK;
+            return (nulls[chunk][offset >>> 6] & (1L << offset)) != 0;
+        }
+
+        // 块数组本身按倍数扩容, 只复制块引用
+        static <A> A[] ensureChunk(A[] chunks, int chunk) {
+            return chunk < chunks.length ? chunks : Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunk + 1));
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private long[][] chunks = new long[8][];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.LONG;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            long v = rs.getLong(index);
+            if (rs.wasNull()) {
+                markNull(row);
+            }
+            int chunk = row >>> CHUNK_BITS;
+            chunks = ensureChunk(chunks, chunk);
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new long[CHUNK_SIZE];
+            }
+            chunks[chunk][row & CHUNK_MASK] = v;
+        }
+
+        long get(int row) {
+            return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+        }
+
+        @Override
+        Object box(int row) {
+            return get(row);
+        }
+    }
+
+    private static final class IntColumn extends Column {
+        private int[][] chunks = new int[8][];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.INT;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            int v = rs.getInt(index);
+            if (rs.wasNull()) {
+                markNull(row);
+            }
+            int chunk = row >>> CHUNK_BITS;
+            chunks = ensureChunk(chunks, chunk);
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new int[CHUNK_SIZE];
+            }
+            chunks[chunk][row & CHUNK_MASK] = v;
+        }
+
+        int get(int row) {
+            return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+        }
+
+        int[] copy(int rowCount) {
+            int[] result = new int[rowCount];
+            for (int from = 0; from < rowCount; from += CHUNK_SIZE) {
+                System.arraycopy(chunks[from >>> CHUNK_BITS], 0, result, from, Math.min(CHUNK_SIZE, rowCount - from));
+            }
+            return result;
+        }
+
+        @Override
+        Object box(int row) {
+            return get(row);
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private double[][] chunks = new double[8][];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.DOUBLE;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            double v = rs.getDouble(index);
+            if (rs.wasNull()) {
+                markNull(row);
+            }
+            int chunk = row >>> CHUNK_BITS;
+            chunks = ensureChunk(chunks, chunk);
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new double[CHUNK_SIZE];
+            }
+            chunks[chunk][row & CHUNK_MASK] = v;
+        }
+
+        double get(int row) {
+            return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+        }
+
+        double[] copy(int rowCount) {
+            double[] result = new double[rowCount];
+            for (int from = 0; from < rowCount; from += CHUNK_SIZE) {
+                System.arraycopy(chunks[from >>> CHUNK_BITS], 0, result, from, Math.min(CHUNK_SIZE, rowCount - from));
+            }
+            return result;
+        }
+
+        @Override
+        Object box(int row) {
+            return get(row);
+        }
+    }
+
+    // 字典编码: 相同字符串只保存一份, 每行存编号, NULL 编号为 -1
+    private static final class StringColumn extends Column {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[][] chunks = new int[8][];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.STRING;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            String v = rs.getString(index);
+            int code;
+            if (v == null) {
+                markNull(row);
+                code = -1;
+            } else {
+                Integer existing = codes.get(v);
+                if (existing == null) {
+                    existing = dictionary.size();
+                    codes.put(v, existing);
+                    dictionary.add(v);
+                }
+                code = existing;
+            }
+            int chunk = row >>> CHUNK_BITS;
+            chunks = ensureChunk(chunks, chunk);
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new int[CHUNK_SIZE];
+            }
+            chunks[chunk][row & CHUNK_MASK] = code;
+        }
+
+        int code(int row) {
+            return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+        }
+
+        String get(int row) {
+            int code = code(row);
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        Object box(int row) {
+            return get(row);
+        }
+    }
+
+    // 其他类型按对象存储
+    private static final class ObjectColumn extends Column {
+        private Object[][] chunks = new Object[8][];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            Object v = rs.getObject(index);
+            if (v == null) {
+                markNull(row);
+            }
+            int chunk = row >>> CHUNK_BITS;
+            chunks = ensureChunk(chunks, chunk);
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new Object[CHUNK_SIZE];
+            }
+            chunks[chunk][row & CHUNK_MASK] = v;
+        }
+
+        @Override
+        Object box(int row) {
+            return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+        }
+    }
+}
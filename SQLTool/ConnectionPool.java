@@ -0,0 +1,311 @@
+package SQLTool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// 数据库连接池
+public class ConnectionPool {
+    private final String url;
+    private final String username;
+    private final String password;
+    private final PoolConfig config;
+
+    // 许可数即最大连接数, 公平模式下等待线程按先来后到获得连接
+    private final Semaphore permits;
+    // 空闲连接, 头部为最近归还的连接
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<Connection, PooledConnection> borrowed = new ConcurrentHashMap<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed;
+
+    ConnectionPool(String url, String username, String password, PoolConfig config) {
+        if (config.getMinSize() > config.getMaxSize()) {
+            throw new IllegalArgumentException("最小连接数不能大于最大连接数");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), config.isFair());
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SQLTool-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.getEvictionIntervalMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+
+//    借出连接（超过等待时间抛出 SQLTimeoutException）
+
+    Connection borrow() throws SQLException {
+        if (closed) {
+            throw new JDBCException("连接池已关闭");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis());
+        try {
+            if (!permits.tryAcquire(config.getMaxWaitMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("获取连接超时: " + config.getMaxWaitMillis() + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("获取连接被中断", e);
+        }
+
+        try {
+            PooledConnection pc = takeIdleOrCreate(deadline);
+            borrowed.put(pc.connection, pc);
+            return pc.connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pc = idle.pollFirst();
+            if (pc != null) {
+                if (validate(pc)) {
+                    return pc;
+                }
+                discard(pc);
+                continue;
+            }
+            if (reserveSlot()) {
+                return create();
+            }
+            // 连接总数已满但空闲连接正被后台补充, 短暂等待
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new SQLTimeoutException("获取连接超时: " + config.getMaxWaitMillis() + "ms");
+            }
+            try {
+                pc = idle.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("获取连接被中断", e);
+            }
+            if (pc != null) {
+                idle.offerFirst(pc);
+            }
+        }
+    }
+
+
+//    归还连接（非本池连接直接关闭）
+
+    void release(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        PooledConnection pc = borrowed.remove(conn);
+        if (pc == null) {
+            closeQuietly(conn);
+            return;
+        }
+        try {
+            if (closed || conn.isClosed()) {
+                discard(pc);
+                return;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            pc.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pc);
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+
+//    标记连接失效, 归还时不再放回池中
+
+    void invalidate(Connection conn) {
+        PooledConnection pc = borrowed.remove(conn);
+        if (pc != null) {
+            discard(pc);
+            permits.release();
+        } else {
+            closeQuietly(conn);
+        }
+    }
+
+    // 连接是否由本池借出
+    boolean owns(Connection conn) {
+        return borrowed.containsKey(conn);
+    }
+
+    private boolean validate(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastUsed < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pc.connection.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = total.get();
+            if (current >= config.getMaxSize()) {
+                return false;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // 调用前必须已通过 reserveSlot 占用名额
+    private PooledConnection create() throws SQLException {
+        try {
+            Connection conn = DriverManager.getConnection(url, username, password);
+            int cacheSize = config.getStatementCacheSize();
+            StatementCache cache = cacheSize > 0
+                    ? new StatementCache(conn, cacheSize, statementHits, statementMisses)
+                    : null;
+            return new PooledConnection(conn, cache);
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        total.decrementAndGet();
+        if (pc.statementCache != null) {
+            pc.statementCache.clear();
+        }
+        closeQuietly(pc.connection);
+    }
+
+
+//    从连接的语句缓存中取出 PreparedStatement
+
+    PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        PooledConnection pc = borrowed.get(conn);
+        if (pc == null || pc.statementCache == null) {
+            return conn.prepareStatement(sql);
+        }
+        return pc.statementCache.prepare(sql);
+    }
+
+
+//    归还语句, 返回 false 表示该语句不归缓存管理需由调用方关闭
+
+    boolean releaseStatement(Connection conn, PreparedStatement ps) {
+        PooledConnection pc = borrowed.get(conn);
+        return pc != null && pc.statementCache != null && pc.statementCache.release(ps);
+    }
+
+
+//    后台维护: 回收超时空闲连接并补足最小连接数
+
+    private void maintain() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && total.get() > config.getMinSize()) {
+            PooledConnection pc = it.next();
+            if (now - pc.lastUsed > config.getIdleTimeoutMillis() && idle.remove(pc)) {
+                discard(pc);
+            }
+        }
+
+        while (!closed && total.get() < config.getMinSize() && reserveSlot()) {
+            try {
+                idle.offerLast(create());
+            } catch (SQLException e) {
+                ColorLogger.logError("连接池补充连接失败: " + url, e);
+                return;
+            }
+        }
+    }
+
+
+//    关闭连接池（借出中的连接在归还时关闭）
+
+    void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getStatementCacheHits() {
+        return statementHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementMisses.sum();
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            if (!conn.isClosed()) {
+                conn.close();
+            }
+        } catch (SQLException ignored) {
+        }
+    }
+
+    // 池内连接及其状态
+    static final class PooledConnection {
+        final Connection connection;
+        final StatementCache statementCache;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection connection, StatementCache statementCache) {
+            this.connection = connection;
+            this.statementCache = statementCache;
+        }
+    }
+}
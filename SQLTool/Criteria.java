@@ -0,0 +1,360 @@
+package SQLTool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 条件查询: 按实体字段拼接 where / order by / limit, 构造时检查字段是否存在及值的类型
+// 相邻条件默认用 and 连接, or() 之后的条件用 or 连接(and 优先), 需要括号时用 and(Criteria) / or(Criteria) 嵌套
+// 同一形状(表、条件结构、IN 列表分桶长度、排序、分页)的查询生成相同的 SQL, 不同参数值复用同一语句缓存
+// 生成的 SQL 缓存在实例上, 重复执行时不再拼接
+// 非线程安全, 构造完成后可以重复执行
+public final class Criteria<T> {
+    // IN 列表按 1, 2, 4, 8 ... 分桶补齐, 超过最大桶长度时拆成多个 in 用 or 连接
+    private static final int MAX_IN_BUCKET = 512;
+
+    private final Class<T> entityClass;
+    private final EntityMetadata meta;
+    private final StringBuilder where;
+    private final List<Object> params;
+    // 顶层 and 连接的等值条件, 用于按分片键路由
+    private final Map<EntityMetadata.Property, Object> equalities;
+    private final List<SortKey> sortKeys;
+    private final StringBuilder orderBy;
+    private String connector = " and ";
+    private boolean hasOr;
+    private Integer limit;
+    private Integer offset;
+    // 最近一次生成的 SQL, 条件、排序或分页变化时清除
+    private Template template;
+
+    private Criteria(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        this.meta = EntityMetadata.of(entityClass);
+        this.where = new StringBuilder();
+        this.params = new ArrayList<>();
+        this.equalities = new LinkedHashMap<>();
+        this.sortKeys = new ArrayList<>();
+        this.orderBy = new StringBuilder();
+    }
+
+    private Criteria(Criteria<T> source) {
+        this.entityClass = source.entityClass;
+        this.meta = source.meta;
+        this.where = new StringBuilder(source.where);
+        this.params = new ArrayList<>(source.params);
+        this.equalities = new LinkedHashMap<>(source.equalities);
+        this.sortKeys = new ArrayList<>(source.sortKeys);
+        this.orderBy = new StringBuilder(source.orderBy);
+        this.connector = source.connector;
+        this.hasOr = source.hasOr;
+        this.limit = source.limit;
+        this.offset = source.offset;
+    }
+
+    public static <T> Criteria<T> of(Class<T> entityClass) {
+        if (entityClass == null) {
+            throw new IllegalArgumentException("实体类为空");
+        }
+        return new Criteria<>(entityClass);
+    }
+
+
+//    比较条件, 字段名为驼峰字段名或列名; 值为 null 时请使用 isNull / isNotNull
+
+    public Criteria<T> eq(String field, Object value) {
+        EntityMetadata.Property property = property(field);
+        checkValue(property, value);
+        if (where.isEmpty() || connector.equals(" and ")) {
+            equalities.putIfAbsent(property, value);
+        }
+        return predicate(property.getColumn() + " = ?", value);
+    }
+
+    public Criteria<T> ne(String field, Object value) {
+        return compare(field, " <> ?", value);
+    }
+
+    public Criteria<T> gt(String field, Object value) {
+        return compare(field, " > ?", value);
+    }
+
+    public Criteria<T> ge(String field, Object value) {
+        return compare(field, " >= ?", value);
+    }
+
+    public Criteria<T> lt(String field, Object value) {
+        return compare(field, " < ?", value);
+    }
+
+    public Criteria<T> le(String field, Object value) {
+        return compare(field, " <= ?", value);
+    }
+
+    public Criteria<T> between(String field, Object from, Object to) {
+        EntityMetadata.Property property = property(field);
+        checkValue(property, from);
+        checkValue(property, to);
+        return predicate(property.getColumn() + " between ? and ?", from, to);
+    }
+
+    // pattern 原样传给数据库, 通配符由调用方添加
+    public Criteria<T> like(String field, String pattern) {
+        EntityMetadata.Property property = property(field);
+        if (property.getType() != String.class) {
+            throw new IllegalArgumentException("like 只能用于字符串字段: " + property.getName());
+        }
+        checkValue(property, pattern);
+        return predicate(property.getColumn() + " like ?", pattern);
+    }
+
+    public Criteria<T> isNull(String field) {
+        return predicate(property(field).getColumn() + " is null");
+    }
+
+    public Criteria<T> isNotNull(String field) {
+        return predicate(property(field).getColumn() + " is not null");
+    }
+
+
+//    IN 列表: 长度补齐到 1, 2, 4, 8 ... 的桶长度(用最后一个值填充), 空列表时 in 恒为假, not in 恒为真
+
+    public Criteria<T> in(String field, Collection<?> values) {
+        return inList(field, values, false);
+    }
+
+    public Criteria<T> notIn(String field, Collection<?> values) {
+        return inList(field, values, true);
+    }
+
+    private Criteria<T> inList(String field, Collection<?> values, boolean negate) {
+        EntityMetadata.Property property = property(field);
+        if (values == null) {
+            throw new IllegalArgumentException("IN 列表为空: " + property.getName());
+        }
+        List<Object> list = new ArrayList<>(values);
+        for (Object value : list) {
+            checkValue(property, value);
+        }
+        if (list.isEmpty()) {
+            return predicate(negate ? "1 = 1" : "1 = 0");
+        }
+        String op = negate ? " not in (" : " in (";
+        StringBuilder sql = new StringBuilder();
+        List<Object> bound = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += MAX_IN_BUCKET) {
+            int size = Math.min(MAX_IN_BUCKET, list.size() - from);
+            int bucket = bucketSize(size);
+            if (from > 0) {
+                sql.append(negate ? " and " : " or ");
+            }
+            sql.append(property.getColumn()).append(op).append(String.join(", ", Collections.nCopies(bucket, "?"))).append(')');
+            for (int i = 0; i < bucket; i++) {
+                bound.add(list.get(from + Math.min(i, size - 1)));
+            }
+        }
+        String clause = list.size() > MAX_IN_BUCKET ? "(" + sql + ")" : sql.toString();
+        return predicate(clause, bound.toArray());
+    }
+
+    static int bucketSize(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+
+//    连接与嵌套: or() 使下一个条件用 or 连接; and/or(group) 把另一个条件整体加括号后连接
+
+    public Criteria<T> or() {
+        if (where.isEmpty()) {
+            throw new IllegalArgumentException("or 之前没有条件");
+        }
+        connector = " or ";
+        return this;
+    }
+
+    public Criteria<T> and(Criteria<T> group) {
+        return group(" and ", group);
+    }
+
+    public Criteria<T> or(Criteria<T> group) {
+        return group(" or ", group);
+    }
+
+    private Criteria<T> group(String join, Criteria<T> group) {
+        if (group == null || group.entityClass != entityClass) {
+            throw new IllegalArgumentException("嵌套条件必须属于同一实体类: " + entityClass.getSimpleName());
+        }
+        if (group.where.isEmpty()) {
+            return this;
+        }
+        if (!where.isEmpty()) {
+            connector = join;
+        }
+        return predicate("(" + group.where + ")", group.params.toArray());
+    }
+
+
+//    排序与分页
+
+    public Criteria<T> orderBy(SortKey... keys) {
+        for (SortKey key : keys) {
+            EntityMetadata.Property property = property(key.getField());
+            orderBy.append(orderBy.isEmpty() ? " order by " : ", ")
+                    .append(property.getColumn()).append(key.isAscending() ? " asc" : " desc");
+            sortKeys.add(key);
+        }
+        template = null;
+        return this;
+    }
+
+    public Criteria<T> limit(int limit) {
+        return limit(limit, 0);
+    }
+
+    public Criteria<T> limit(int limit, int offset) {
+        if (limit <= 0 || offset < 0) {
+            throw new IllegalArgumentException("limit 必须大于0, offset 不能小于0");
+        }
+        this.limit = limit;
+        this.offset = offset;
+        this.template = null;
+        return this;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    @Override
+    public String toString() {
+        return entityClass.getSimpleName() + "[" + where + orderBy + (limit == null ? "" : " limit " + limit
+                + " offset " + offset) + "] " + params;
+    }
+
+
+//    供 DMLTool 使用: SQL 模板与参数
+
+    EntityMetadata getMetadata() {
+        return meta;
+    }
+
+    boolean isPaged() {
+        return limit != null;
+    }
+
+    boolean isOrdered() {
+        return !sortKeys.isEmpty();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    // head + where 条件 + tail, ordered 为 true 时追加排序和分页
+    String sql(String head, String tail, boolean ordered) {
+        Template current = template;
+        if (current != null && current.ordered == ordered && current.head.equals(head) && current.tail.equals(tail)) {
+            return current.sql;
+        }
+        boolean paged = ordered && limit != null;
+        String sql = head + (where.isEmpty() ? "" : " where " + where) + tail
+                + (ordered ? orderBy : "") + (paged ? " limit ? offset ?" : "");
+        template = new Template(head, tail, ordered, sql);
+        return sql;
+    }
+
+    Object[] parameters(boolean ordered) {
+        if (!ordered || limit == null) {
+            return params.toArray();
+        }
+        Object[] values = params.toArray(new Object[params.size() + 2]);
+        values[params.size()] = limit;
+        values[params.size() + 1] = offset;
+        return values;
+    }
+
+    // 顶层等值条件中该字段的值; 含 or 时返回 null
+    Object equalityValue(EntityMetadata.Property property) {
+        return hasOr ? null : equalities.get(property);
+    }
+
+    // 分片查询: 各分片取前 limit + offset 行, 合并后再分页
+    Criteria<T> firstRows() {
+        Criteria<T> copy = new Criteria<>(this);
+        if (limit != null) {
+            copy.limit = limit + offset;
+            copy.offset = 0;
+        }
+        return copy;
+    }
+
+    // 按排序字段比较实体, 用于合并分片结果; nullsLow 为分片数据库的 NULL 排序位置
+    Comparator<T> comparator(boolean nullsLow) {
+        Comparator<T> result = (a, b) -> 0;
+        for (SortKey key : sortKeys) {
+            result = result.thenComparing(DMLTool.propertyComparator(property(key.getField()), key.isAscending(), nullsLow));
+        }
+        return result;
+    }
+
+    private Criteria<T> compare(String field, String op, Object value) {
+        EntityMetadata.Property property = property(field);
+        checkValue(property, value);
+        return predicate(property.getColumn() + op, value);
+    }
+
+    private Criteria<T> predicate(String sql, Object... values) {
+        if (!where.isEmpty()) {
+            where.append(connector);
+            hasOr |= connector.equals(" or ");
+        }
+        connector = " and ";
+        where.append(sql);
+        Collections.addAll(params, values);
+        template = null;
+        return this;
+    }
+
+    private EntityMetadata.Property property(String field) {
+        EntityMetadata.Property property = meta.getProperty(field);
+        if (property == null) {
+            throw new JDBCException("字段不存在: " + entityClass.getSimpleName() + "." + field);
+        }
+        return property;
+    }
+
+    // 值必须是字段类型(或可转换的数值类型)
+    private static void checkValue(EntityMetadata.Property property, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("条件值为 null, 请使用 isNull/isNotNull: " + property.getName());
+        }
+        Class<?> type = boxed(property.getType());
+        if (type.isInstance(value) || (Number.class.isAssignableFrom(type) && value instanceof Number)) {
+            return;
+        }
+        throw new IllegalArgumentException("条件值类型不匹配: " + property.getName() + " 需要 "
+                + type.getSimpleName() + ", 实际为 " + value.getClass().getSimpleName());
+    }
+
+    private record Template(String head, String tail, boolean ordered, String sql) {}
+
+    static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        return Character.class;
+    }
+}
@@ -1,313 +1,248 @@
 package SQLTool;
 
-import java.sql.*;
-import java.util.*;
-
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// 静态入口: 所有方法作用于当前线程绑定的 Database 实例, 未绑定时作用于默认实例
 public class DBConnectionTool {
-    private static String dbUrl;
-    private static String username;
-    private static String password;
-    private static String Prefix = "m_";
+    private DBConnectionTool() {}
+
+    public static void init(String url, String user, String pass) {
+        Database.current().init(url, user, pass);
+    }
 
+    public static void init(String url, String user, String pass, PoolConfig poolConfig) {
+        Database.current().init(url, user, pass, poolConfig);
+    }
 
-    // 线程本地事务状态
-    private static final ThreadLocal<Connection> localConnection = new ThreadLocal<>();
-    private static final ThreadLocal<Boolean> localTransactionOwner = new ThreadLocal<>();
 
-    public static void init(String url, String user, String pass) {
-        dbUrl = Objects.requireNonNull(url, "URL为空");
-        username = Objects.requireNonNull(user, "用户名为空");
-        password = Objects.requireNonNull(pass, "密码为空");
+//    关闭连接池
+
+    public static void shutdown() {
+        Database.current().shutdown();
+    }
+
+    public static ConnectionPool getPool() {
+        return Database.current().getPool();
+    }
+
+
+//    添加只读副本: 事务外的查询路由到副本, 写入、DDL 和事务内的操作始终走主库
+
+    public static void addReplica(String url, String user, String pass) {
+        Database.current().addReplica(url, user, pass);
+    }
+
+    public static void addReplica(String url, String user, String pass, PoolConfig poolConfig) {
+        Database.current().addReplica(url, user, pass, poolConfig);
+    }
+
+    public static void clearReplicas() {
+        Database.current().clearReplicas();
+    }
+
+    public static ReplicaRouter getReplicaRouter() {
+        return Database.current().getReplicaRouter();
+    }
+
+    public static void setLoadBalance(ReplicaRouter.LoadBalance loadBalance) {
+        Database.current().setLoadBalance(loadBalance);
     }
 
+    // 对之后添加第一个副本时创建的路由生效
+    public static void setReplicaHealthCheckMillis(long millis) {
+        Database.current().setReplicaHealthCheckMillis(millis);
+    }
+
+    public static void setReadYourWritesMillis(long millis) {
+        Database.current().setReadYourWritesMillis(millis);
+    }
 
-//    获取数据库连接（自动管理事务状态）
 
-    private static Connection getConnection() throws SQLException {
-        // 如果已经在事务中 返回事务连接
-        Connection transactionConn = localConnection.get();
-        if (transactionConn != null) {
-            return transactionConn;
-        }
+//    读己之写: 当前线程固定读主库, 可嵌套, 需与 unpinPrimary 成对调用
 
-        // 获取新的非事务连接
-        return DriverManager.getConnection(dbUrl, username, password);
+    public static void pinPrimary() {
+        Database.current().pinPrimary();
+    }
+
+    public static void unpinPrimary() {
+        Database.current().unpinPrimary();
+    }
+
+    // 单次调用固定读主库
+    public static <T> T onPrimary(Supplier<T> action) {
+        return Database.current().onPrimary(action);
     }
 
 
 //    开启事务
 
     public static void beginTransaction() throws SQLException {
-        if (localConnection.get() != null) {
-            throw new JDBCException("事务已经开始");
-        }
-
-        Connection conn = DriverManager.getConnection(dbUrl, username, password);
-        conn.setAutoCommit(false);
-        localConnection.set(conn);
-        localTransactionOwner.set(true);
-        ColorLogger.logTransaction(">>> BEGIN TRANSACTION");
+        Database.current().beginTransaction();
     }
 
 
 //    提交事务
 
     public static void commitTransaction() throws SQLException {
-        Connection conn = localConnection.get();
-        if (conn == null) {
-            throw new JDBCException("没有可用事务");
-        }
-
-        try {
-            conn.commit();
-        } finally {
-            closeTransactionConnection(conn);
-        }
-        ColorLogger.logTransaction("<<< COMMIT TRANSACTION");
+        Database.current().commitTransaction();
     }
 
 
-//    回滚事务
+//    注册事务提交后执行的操作: 不在事务中时立即执行, 事务回滚时丢弃
 
-    public static void rollbackTransaction() {
-        Connection conn = localConnection.get();
-        if (conn != null) {
-            try {
-                conn.rollback();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            } finally {
-                closeTransactionConnection(conn);
-            }
-        }
-        ColorLogger.logTransaction("!!! ROLLBACK TRANSACTION");
+    public static void afterCommit(Runnable action) {
+        Database.current().afterCommit(action);
     }
 
+//    注册事务结束(提交或回滚)后执行的操作: 不在事务中时立即执行
 
-//    关闭事务连接并清理线程本地状态
+    public static void afterCompletion(Runnable action) {
+        Database.current().afterCompletion(action);
+    }
+
+    public static boolean isInTransaction() {
+        return Database.current().isInTransaction();
+    }
 
-    private static void closeTransactionConnection(Connection conn) {
-        try {
-            if (conn != null && !conn.isClosed()) {
-                conn.setAutoCommit(true); // 恢复自动提交
-                conn.close();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            localConnection.remove();
-            localTransactionOwner.remove();
-        }
 
+//    回滚事务
+
+    public static void rollbackTransaction() {
+        Database.current().rollbackTransaction();
     }
 
 
 //    执行SQL更新
 
     public static int executeUpdate(String sql, Object... params) {
-        Connection conn = null;
-        PreparedStatement ps = null;
-
-        try {
-            // 添加日志
-            ColorLogger.logSQL(sql, params);
-            conn = getConnection();
-            ps = conn.prepareStatement(sql);
-            bindParameters(ps, params);
-            // 记录结果
-            int result = ps.executeUpdate();
-            ColorLogger.logResult(result);
-            return result;
-        } catch (SQLException e) {
-            ColorLogger.logError(sql, e);
-            throw new JDBCException("更新失败: " + sql, e);
-        } finally {
-            closeStatement(ps);
-
-            // 非事务操作需要关闭连接
-            if (localConnection.get() == null && conn != null) {
-                closeConnection(conn);
-            }
-        }
-
+        return Database.current().executeUpdate(sql, params);
     }
 
 
 //    执行批处理操作
 
     public static int executeBatch(String sql, Object... params) {
-        Connection conn = null;
-        PreparedStatement ps = null;
-
-        try {
-            // 添加批量日志
-            ColorLogger.logBatch(sql, Collections.singletonList(params));
-            conn = getConnection();
-            ps = conn.prepareStatement(sql);
-            int i = 1;
-            for (Object param : params) {
-                ps.setObject(i, param);
-                i ++;
-            }
-
-            int results = ps.executeUpdate();
-            ColorLogger.logResults(results);
-            return results;
-        } catch (SQLException e) {
-            ColorLogger.logError(sql, e);
-            rollbackSilently(conn);
-            throw new JDBCException("批量执行失败: " + sql, e);
-        } finally {
-            closeStatement(ps);
-
-            // 非事务操作需要关闭连接
-            if (localConnection.get() == null && conn != null) {
-                closeConnection(conn);
-            }
-        }
-    }
-
-
-//    静默回滚
-
-    private static void rollbackSilently(Connection conn) {
-        if (conn != null) {
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                // 忽略回滚异常
-            }
-        }
+        return Database.current().executeBatch(sql, params);
+    }
+
+
+//    分块批处理: 每块 addBatch 后 executeBatch, 返回每块影响行数
+
+    public static int[] executeBatch(String sql, List<Object[]> paramsList) {
+        return Database.current().executeBatch(sql, paramsList);
+    }
+
+    public static int[] executeBatch(String sql, List<Object[]> paramsList, int chunkSize, int commitInterval) {
+        return Database.current().executeBatch(sql, paramsList, chunkSize, commitInterval);
+    }
+
+
+//    分块批处理（按行惰性取参数）
+//    非事务调用时整体在一个事务中执行, commitInterval > 0 时每执行该数量的块提交一次;
+//    已在事务中时不提交, 由外层事务决定提交或回滚
+
+    public static <R> int[] executeBatch(String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                                                int chunkSize, int commitInterval) {
+        return Database.current().executeBatch(sql, rows, toParams, chunkSize, commitInterval);
+    }
+
+
+//    分块批处理并返回每行的执行结果(驱动返回的原始计数, 可能为 Statement.SUCCESS_NO_INFO)
+
+    public static <R> int[] executeBatchPerRow(String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                                                      int chunkSize) {
+        return Database.current().executeBatchPerRow(sql, rows, toParams, chunkSize);
     }
 
 
 //    查询并映射结果
 
     public static <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) {
-        Connection conn = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-
-        try {
-            // 添加日志
-            ColorLogger.logSQL(sql, params);
-            conn = getConnection();
-            ps = conn.prepareStatement(sql);
-            bindParameters(ps, params);
-            rs = ps.executeQuery();
-
-            List<T> results = new ArrayList<>();
-            while (rs.next()) {
-                results.add(mapper.mapRow(rs));
-            }
-            ColorLogger.logResult(results.size());
-            return results;
-        } catch (SQLException e) {
-            ColorLogger.logError(sql, e);
-            throw new JDBCException("查询失败: " + sql, e);
-        } finally {
-            closeResultSet(rs);
-            closeStatement(ps);
-
-            // 非事务操作需要关闭连接
-            if (localConnection.get() == null && conn != null) {
-                closeConnection(conn);
-            }
-        }
+        return Database.current().query(sql, mapper, params);
+    }
+
+
+//    流式查询: 连接、语句和结果集保持打开直到流关闭, 逐行惰性映射
+//    调用方必须关闭返回的流（推荐 try-with-resources）, 读到末尾时也会自动释放
+
+    public static <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params) {
+        return Database.current().stream(sql, mapper, params);
+    }
+
+
+//    列式查询: 数值列直接读入基本类型数组, 字符串列字典编码, 适合大量数值行的分析查询
+
+    public static ColumnBatch queryColumns(String sql, Object... params) {
+        return Database.current().queryColumns(sql, params);
+    }
+
+
+//    流式逐行处理, 返回处理的行数
+
+    public static <T> long forEach(String sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object... params) {
+        return Database.current().forEach(sql, mapper, consumer, params);
+    }
+
+
+//    可落盘的查询: 结果超过落盘阈值后写入内存映射的临时文件, 返回的列表使用完毕需关闭
+
+    public static <T> SpillList<T> queryBuffered(String sql, RowMapper<T> mapper, SpillList.Codec<T> codec, Object... params) {
+        return Database.current().queryBuffered(sql, mapper, codec, params);
     }
 
 
 //    执行DDL语句（建表、删表等）
 
     public static int executeDDL(String ddl) {
-        Connection conn = null;
-        Statement stmt = null;
-
-        try {
-            // 添加日志
-            ColorLogger.logDDL(ddl);
-            conn = getConnection();
-            stmt = conn.createStatement();
-            int result = stmt.executeUpdate(ddl);
-            // 记录DDL结果
-            ColorLogger.logDDL(ddl);
-            return result == 0 ? 1 : 0; // DDL通常返回0
-        } catch (SQLException e) {
-            ColorLogger.logError(ddl, e);
-            throw new JDBCException("DDL执行失败: " + ddl, e);
-        } finally {
-            closeStatement(stmt);
-
-            // 非事务操作需要关闭连接
-            if (localConnection.get() == null && conn != null) {
-                closeConnection(conn);
-            }
-        }
+        return Database.current().executeDDL(ddl);
     }
 
 
 //    在事务中执行操作
 
     public static void doInTransaction(TransactionBlock block) {
-        try {
-            beginTransaction();
-            block.execute();
-            commitTransaction();
-        } catch (Exception e) {
-            try {
-                rollbackTransaction();
-            } catch (Exception rollbackEx) {
-                e.addSuppressed(rollbackEx);
-            }
-            throw new JDBCException("事务执行失败", e);
-        }
-    }
-
-    // 辅助方法
-    //设置占位符
-    private static void bindParameters(PreparedStatement ps, Object[] params) throws SQLException {
-        if (params != null) {
-            for (int i = 0; i < params.length; i++) {
-                ps.setObject(i + 1, params[i]);
-            }
-        }
-    }
-
-    private static void closeConnection(Connection conn) {
-        if (conn != null) {
-            try {
-                if (!conn.isClosed()) {
-                    conn.close();
-                }
-            } catch (SQLException ignored) {
-            }
-        }
-    }
-
-    private static void closeStatement(Statement stmt) {
-        if (stmt != null) {
-            try {
-                stmt.close();
-            } catch (SQLException ignored) {
-            }
-        }
-    }
-
-    private static void closeResultSet(ResultSet rs) {
-        if (rs != null) {
-            try {
-                rs.close();
-            } catch (SQLException ignored) {
-            }
-        }
+        Database.current().doInTransaction(block);
+    }
+
+    public static int getFetchSize() {
+        return Database.current().getFetchSize();
+    }
+
+    public static void setFetchSize(int size) {
+        Database.current().setFetchSize(size);
+    }
+
+    public static void setSpillThreshold(int rows, long bytes) {
+        Database.current().setSpillThreshold(rows, bytes);
+    }
+
+    public static int getBatchSize() {
+        return Database.current().getBatchSize();
+    }
+
+    public static void setBatchSize(int size) {
+        Database.current().setBatchSize(size);
+    }
+
+    public static Dialect getDialect() {
+        return Database.current().getDialect();
+    }
+
+    // URL 无法识别方言时手动指定
+    public static void setDialect(Dialect d) {
+        Database.current().setDialect(d);
     }
 
     public static String getPrefix() {
-        return Prefix;
+        return Database.current().getPrefix();
     }
 
     public static void setPrefix(String prefix) {
-        Prefix = prefix;
+        Database.current().setPrefix(prefix);
     }
 }
-
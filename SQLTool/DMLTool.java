@@ -1,20 +1,44 @@
 package SQLTool;
 
 
-import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class DMLTool {
     private DMLTool() {}
 
+    // deleteByIds 每条语句的 IN 列表长度, 低于常见数据库的参数个数限制(Oracle 1000, SQL Server 2100)
+    private static final int IN_LIST_SIZE = 500;
+
     // 数据库初始化
     public static void init(String url, String user, String pass) {
         DBConnectionTool.init(url, user, pass);
     }
 
+    // 数据库初始化（自定义连接池参数）
+    public static void init(String url, String user, String pass, PoolConfig poolConfig) {
+        DBConnectionTool.init(url, user, pass, poolConfig);
+    }
+
     // 在事务中执行操作
     public static void doInTransaction( TransactionBlock block) {
         DBConnectionTool.doInTransaction(block);
@@ -22,164 +46,957 @@ public class DMLTool {
 
     // 查询所有数据
     public static <T> List<T> findAll(Class<T> entityClass) {
-        String tableName = getTableName(entityClass);
-        String columns = getColumns(entityClass);
-        String sql = String.format("select %s from %s", columns, tableName);
-        return DBConnectionTool.query(sql, new EntityMapper<>(entityClass));
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            return concat(Sharding.scatter(spec.shards, () -> findAll(entityClass)));
+        }
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        return cachedQuery(entityClass, meta, meta.getSelectSql());
     }
     // 分页查询数据
+    // 分片实体: 每个分片取前 index + offset 行, 按分片顺序拼接后再分页
     public static <T> List<T> findAll(Class<T> entityClass, Integer index, Integer offset) {
-        String tableName = getTableName(entityClass);
-        String columns = getColumns(entityClass);
-        String sql = String.format("select %s from %s limit ? offset ?", columns, tableName);
-        return DBConnectionTool.query(sql, new EntityMapper<>(entityClass), index, offset);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            List<T> all = concat(Sharding.scatter(spec.shards, () -> findAll(entityClass, index + offset, 0)));
+            return page(all, index, offset);
+        }
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        String sql = meta.getSelectSql() + " limit ? offset ?";
+        return cachedQuery(entityClass, meta, sql, index, offset);
     }
     // 分页排序查询数据
+    // 分片实体: 每个分片取排序后的前 index + offset 行, 按排序字段归并后再分页(NULL 的位置与分片数据库的排序一致)
     public static <T> List<T> findAll(Class<T> entityClass,String columnsName,boolean orderBy, Integer index, Integer offset) {
-        String tableName = getTableName(entityClass);
-        String columns = getColumns(entityClass);
-        String orderByName = ChangeCharTool.toSnakeCase(columnsName);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            List<List<T>> parts = Sharding.scatter(spec.shards,
+                    () -> findAll(entityClass, columnsName, orderBy, index + offset, 0));
+            Comparator<T> comparator = propertyComparator(requireProperty(meta, columnsName), orderBy, spec.nullsSortLow());
+            return page(Sharding.mergeSorted(parts, comparator), index, offset);
+        }
+        String orderByName = meta.toColumn(columnsName);
         String descOrAsc = orderBy ? "asc" : "desc";
-        String sql = String.format("select %s from %s order by %s %s limit ? offset ?", columns, tableName, orderByName, descOrAsc);
-        return DBConnectionTool.query(sql, new EntityMapper<>(entityClass), index, offset);
+        String sql = String.format("%s order by %s %s limit ? offset ?", meta.getSelectSql(), orderByName, descOrAsc);
+        return cachedQuery(entityClass, meta, sql, index, offset);
     }
     // 按条件查询
     public static <T> List<T> findBy(Class<T> entityClass, String column, Object value) {
-        String tableName = getTableName(entityClass);
-        String columns = getColumns(entityClass);
-        String condition = ChangeCharTool.toSnakeCase(column) + " = ?";
-        String sql = String.format("select %s from %s where %s", columns, tableName, condition);
-        return DBConnectionTool.query(sql, new EntityMapper<>(entityClass), value);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            if (spec.isKey(meta, column)) {
+                return spec.shardOf(value).call(() -> findBy(entityClass, column, value));
+            }
+            return concat(Sharding.scatter(spec.shards, () -> findBy(entityClass, column, value)));
+        }
+        String sql = meta.getSelectSql() + " where " + meta.toColumn(column) + " = ?";
+        return cachedQuery(entityClass, meta, sql, value);
     }
 
-    // 更新数据
-    public static <T> int update(T entity, String whereColumn, Object whereValue) {
-        Class<?> clazz = entity.getClass();
-        String tableName = getTableName(clazz);
+    // 条件查询, 见 Criteria
+    // 分片实体: 顶层等值条件包含分片键时路由到单个分片, 否则各分片取前 limit + offset 行, 按排序字段归并后再分页
+    public static <T> List<T> find(Criteria<T> criteria) {
+        Class<T> entityClass = criteria.getEntityClass();
+        EntityMetadata meta = criteria.getMetadata();
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            Object keyValue = criteria.equalityValue(spec.key);
+            if (keyValue != null) {
+                return spec.shardOf(keyValue).call(() -> find(criteria));
+            }
+            Criteria<T> head = criteria.firstRows();
+            List<List<T>> parts = Sharding.scatter(spec.shards, () -> find(head));
+            List<T> all = criteria.isOrdered()
+                    ? Sharding.mergeSorted(parts, criteria.comparator(spec.nullsSortLow())) : concat(parts);
+            return criteria.isPaged() ? page(all, criteria.getLimit(), criteria.getOffset()) : all;
+        }
+        String sql = criteria.sql(meta.getSelectSql(), "", true);
+        return cachedQuery(entityClass, meta, sql, criteria.parameters(true));
+    }
+    // 按条件流式查询, 使用完毕需关闭流
+    public static <T> Stream<T> stream(Criteria<T> criteria) {
+        Class<T> entityClass = criteria.getEntityClass();
+        requireUnsharded(entityClass);
+        String sql = criteria.sql(criteria.getMetadata().getSelectSql(), "", true);
+        return DBConnectionTool.stream(sql, new EntityMapper<>(entityClass), criteria.parameters(true));
+    }
 
-        List<String> columns = getFieldNames(clazz);
-        List<Object> values = getFieldValues(entity);
+    // 按条件查询大结果集, 超过落盘阈值的部分写入临时文件, 返回的列表使用完毕需关闭
+    public static <T> SpillList<T> findBuffered(Criteria<T> criteria) {
+        Class<T> entityClass = criteria.getEntityClass();
+        requireUnsharded(entityClass);
+        String sql = criteria.sql(criteria.getMetadata().getSelectSql(), "", true);
+        return DBConnectionTool.queryBuffered(sql, new EntityMapper<>(entityClass), SpillList.entityCodec(entityClass),
+                criteria.parameters(true));
+    }
 
-        String setClause = columns.stream()
-                .map(col -> ChangeCharTool.toSnakeCase(col) + " = ?")
-                .collect(Collectors.joining(", "));
+    // 统计行数, criteria 为 null 时统计全表; 以下聚合方法的排序和分页条件均被忽略
+    // 分片实体: 顶层等值条件包含分片键时只查询该分片, 否则在所有分片上执行后合并
+    public static <T> long count(Class<T> entityClass, Criteria<T> criteria) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        String sql = where.sql("select count(*) from " + where.getMetadata().getTableName(), "", false);
+        List<Long> parts = aggregate(where, sql, rs -> rs.getLong(1));
+        return parts.stream().mapToLong(Long::longValue).sum();
+    }
+    public static <T> long count(Class<T> entityClass) {
+        return count(entityClass, null);
+    }
+    // 是否存在满足条件的行, 只读取一行
+    public static <T> boolean exists(Class<T> entityClass, Criteria<T> criteria) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        String sql = where.sql("select 1 from " + where.getMetadata().getTableName(), " limit 1", false);
+        return aggregate(where, sql, rs -> true).stream().anyMatch(Boolean::booleanValue);
+    }
+    // 数值字段合计, 没有行时为 0
+    public static <T> BigDecimal sum(Class<T> entityClass, String field, Criteria<T> criteria) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        String column = numericProperty(where.getMetadata(), field).getColumn();
+        String sql = where.sql("select sum(" + column + ") from " + where.getMetadata().getTableName(), "", false);
+        return aggregate(where, sql, rs -> rs.getBigDecimal(1)).stream()
+                .filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+    // 数值字段非 NULL 值的平均值, 没有值时为空
+    public static <T> OptionalDouble avg(Class<T> entityClass, String field, Criteria<T> criteria) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        String column = numericProperty(where.getMetadata(), field).getColumn();
+        String sql = where.sql(String.format("select sum(%s), count(%s) from %s",
+                column, column, where.getMetadata().getTableName()), "", false);
+        List<GroupStats<Object, Object>> parts = aggregate(where, sql,
+                rs -> new GroupStats<>(null, 0, rs.getLong(2), rs.getBigDecimal(1), null, null));
+        GroupStats<Object, Object> total = parts.stream().reduce(GroupStats::merge).orElseThrow();
+        return total.getValueCount() == 0 ? OptionalDouble.empty() : OptionalDouble.of(total.getAverage());
+    }
+    // 字段最小值, 按字段类型读取, 没有值时为 null
+    public static <T, V> V min(Class<T> entityClass, String field, Criteria<T> criteria) {
+        return extreme(entityClass, field, criteria, "min");
+    }
+    // 字段最大值, 按字段类型读取, 没有值时为 null
+    public static <T, V> V max(Class<T> entityClass, String field, Criteria<T> criteria) {
+        return extreme(entityClass, field, criteria, "max");
+    }
+    // 按字段分组计数, 返回分组值到行数的映射(按分组值排序, NULL 的位置与数据库一致; 分片实体按分组值归并各分片结果)
+    public static <T, K> Map<K, Long> countBy(Class<T> entityClass, String groupField, Criteria<T> criteria) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        EntityMetadata meta = where.getMetadata();
+        EntityMetadata.Property group = requireProperty(meta, groupField);
+        TypeHandler<?> keyHandler = meta.getTypeHandlers()[group.getIndex()];
+        String sql = where.sql(String.format("select %s, count(*) from %s", group.getColumn(), meta.getTableName()),
+                String.format(" group by %s order by %s", group.getColumn(), group.getColumn()), false);
+        Map<K, Long> result = new LinkedHashMap<>();
+        for (Object[] row : aggregate(where, sql, rs -> new Object[]{keyHandler.read(rs, 1), rs.getLong(2)}, row -> row[0])) {
+            @SuppressWarnings("unchecked")
+            K key = (K) row[0];
+            result.merge(key, (Long) row[1], Long::sum);
+        }
+        return result;
+    }
+    // 按字段分组聚合数值字段: 行数、非 NULL 值个数、合计、最小值、最大值(平均值见 GroupStats.getAverage), 按分组值排序
+    @SuppressWarnings("unchecked")
+    public static <T, K, V> List<GroupStats<K, V>> groupBy(Class<T> entityClass, String groupField, String valueField,
+                                                          Criteria<T> criteria) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        EntityMetadata meta = where.getMetadata();
+        EntityMetadata.Property group = requireProperty(meta, groupField);
+        EntityMetadata.Property value = numericProperty(meta, valueField);
+        TypeHandler<?> keyHandler = meta.getTypeHandlers()[group.getIndex()];
+        TypeHandler<?> valueHandler = meta.getTypeHandlers()[value.getIndex()];
+        String v = value.getColumn();
+        String sql = where.sql(String.format("select %s, count(*), count(%s), sum(%s), min(%s), max(%s) from %s",
+                        group.getColumn(), v, v, v, v, meta.getTableName()),
+                String.format(" group by %s order by %s", group.getColumn(), group.getColumn()), false);
+        Map<K, GroupStats<K, V>> result = new LinkedHashMap<>();
+        List<GroupStats<K, V>> rows = aggregate(where, sql, rs -> new GroupStats<>((K) keyHandler.read(rs, 1),
+                rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4), (V) valueHandler.read(rs, 5), (V) valueHandler.read(rs, 6)),
+                GroupStats::getKey);
+        for (GroupStats<K, V> stats : rows) {
+            result.merge(stats.getKey(), stats, GroupStats::merge);
+        }
+        return new ArrayList<>(result.values());
+    }
 
-        String whereClause = ChangeCharTool.toSnakeCase(whereColumn) + " = ?";
+    // 投影查询: 只查询并填充指定字段, 其余字段保持默认值
+    // 部分加载的实体未开启 ChangeTracker 时不应直接 update, 否则未加载的字段会被写为默认值
+    public static <T> List<T> findAllFields(Class<T> entityClass, String... fields) {
+        Projection projection = Projection.ofFields(entityClass, fields);
+        return projectionQuery(entityClass, projection, null, null);
+    }
+    // 按条件投影查询
+    public static <T> List<T> findByFields(Class<T> entityClass, String column, Object value, String... fields) {
+        Projection projection = Projection.ofFields(entityClass, fields);
+        return projectionQuery(entityClass, projection, column, value);
+    }
+    // 投影到 DTO/记录类: 只查询与 DTO 同名的实体字段
+    // DTO 中 Lazy 类型的字段不随查询读取, 首次访问时按主键单独查询
+    public static <T, R> List<R> findAllAs(Class<T> entityClass, Class<R> dtoClass) {
+        Projection projection = Projection.ofClass(entityClass, dtoClass);
+        return projectionQuery(dtoClass, projection, null, null);
+    }
+    // 按条件投影到 DTO/记录类
+    public static <T, R> List<R> findByAs(Class<T> entityClass, Class<R> dtoClass, String column, Object value) {
+        Projection projection = Projection.ofClass(entityClass, dtoClass);
+        return projectionQuery(dtoClass, projection, column, value);
+    }
 
-        String sql = String.format("update %s set %s where %s",
-                tableName, setClause, whereClause);
+    // 键集分页查询: token 为上一页返回的令牌, 第一页传 null
+    // 排序字段组合必须唯一(通常以主键结尾), 否则可能跳过相同排序值的行; 排序字段可以为 NULL
+    public static <T> KeysetPage<T> findPage(Class<T> entityClass, int pageSize, String token, SortKey... sortKeys) {
+        requireUnsharded(entityClass);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        EntityMetadata.Property[] keys = resolveSortKeys(meta, sortKeys);
+        Object[] lastValues = token == null ? null
+                : KeysetToken.decode(token, keysetSignature(meta, keys, sortKeys), keys.length);
+        return findPage(entityClass, meta, pageSize, lastValues, keys, sortKeys);
+    }
+    // 键集分页查询: lastValues 为上一页最后一行的排序字段值, 第一页传 null
+    public static <T> KeysetPage<T> findPageAfter(Class<T> entityClass, int pageSize, Object[] lastValues, SortKey... sortKeys) {
+        requireUnsharded(entityClass);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        EntityMetadata.Property[] keys = resolveSortKeys(meta, sortKeys);
+        if (lastValues != null && lastValues.length != keys.length) {
+            throw new JDBCException("排序值个数与排序字段个数不一致");
+        }
+        return findPage(entityClass, meta, pageSize, lastValues, keys, sortKeys);
+    }
+
+    // 流式查询所有数据, 使用完毕需关闭流
+    public static <T> Stream<T> streamAll(Class<T> entityClass) {
+        requireUnsharded(entityClass);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        return DBConnectionTool.stream(meta.getSelectSql(), new EntityMapper<>(entityClass));
+    }
+    // 按条件流式查询, 使用完毕需关闭流
+    public static <T> Stream<T> streamBy(Class<T> entityClass, String column, Object value) {
+        requireUnsharded(entityClass);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        String sql = meta.getSelectSql() + " where " + meta.toColumn(column) + " = ?";
+        return DBConnectionTool.stream(sql, new EntityMapper<>(entityClass), value);
+    }
+
+    // 并行范围扫描主键, 分段数取连接池上限与 CPU 核数的较小值
+    public static <T> List<T> findAllParallel(Class<T> entityClass) {
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        EntityMetadata.Property id = requireId(meta);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            // 分段数按各分片自己的连接池计算, 默认实例可能未初始化
+            List<List<T>> parts = Sharding.scatter(spec.shards, () -> findAllParallel(entityClass));
+            return Sharding.mergeSorted(parts, propertyComparator(id, true, true));
+        }
+        return findAllParallel(entityClass, id.getName(), defaultPartitions());
+    }
+    // 并行范围扫描: 按数值列的 min/max 把表切分为 partitions 段, 每段在各自的连接上并行查询
+    // 各段经 AsyncDBTool 执行, 同时查询的段数受异步许可(连接池上限)限制; 不要在异步任务中调用, 许可耗尽时会互相等待
+    // 结果按该列升序排列, 该列为 NULL 的行排在最前; 不经过查询缓存
+    public static <T> List<T> findAllParallel(Class<T> entityClass, String column, int partitions) {
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        EntityMetadata.Property property = requireProperty(meta, column);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            List<List<T>> parts = Sharding.scatter(spec.shards, () -> findAllParallel(entityClass, column, partitions));
+            // 各分片的结果中 NULL 段总在最前
+            return Sharding.mergeSorted(parts, propertyComparator(property, true, true));
+        }
+        List<Object[]> ranges = scanRanges(meta, property, partitions);
+        if (DBConnectionTool.isInTransaction() || ranges.size() == 1) {
+            // 事务中只能使用事务连接, 其他连接看不到未提交的数据
+            return concat(ranges.stream().map(range -> scanRange(entityClass, meta, property, range)).toList());
+        }
+        List<CompletableFuture<List<T>>> futures = submitRanges(entityClass, meta, property, ranges);
+        List<List<T>> parts = new ArrayList<>(futures.size());
+        for (CompletableFuture<List<T>> future : futures) {
+            parts.add(join(future));
+        }
+        return concat(parts);
+    }
+    // 并行范围扫描, 返回无序的流; 调用时各段(分片实体为所有分片的各段)已提交给 AsyncDBTool 执行,
+    // 流按段完成的先后输出, 先查询完的段不必等待前面的段
+    public static <T> Stream<T> streamAllParallel(Class<T> entityClass, String column, int partitions) {
+        List<CompletableFuture<List<T>>> futures = submitScan(entityClass, column, partitions);
+        BlockingQueue<CompletableFuture<List<T>>> completed = new LinkedBlockingQueue<>();
+        for (CompletableFuture<List<T>> future : futures) {
+            future.whenComplete((rows, error) -> completed.add(future));
+        }
+        return Stream.generate(() -> take(completed)).limit(futures.size())
+                .flatMap(future -> join(future).stream()).unordered();
+    }
+
+    private static <T> List<CompletableFuture<List<T>>> submitScan(Class<T> entityClass, String column, int partitions) {
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        EntityMetadata.Property property = requireProperty(meta, column);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+            for (Database shard : spec.shards) {
+                futures.addAll(shard.call(() -> submitScan(entityClass, column, partitions)));
+            }
+            return futures;
+        }
+        if (DBConnectionTool.isInTransaction()) {
+            throw new JDBCException("事务中不能并行扫描, 请使用 findAllParallel");
+        }
+        return submitRanges(entityClass, meta, property, scanRanges(meta, property, partitions));
+    }
+
+    private static <R> R take(BlockingQueue<R> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JDBCException("等待并行扫描结果时被中断", e);
+        }
+    }
+
+    private static <T> List<CompletableFuture<List<T>>> submitRanges(Class<T> entityClass, EntityMetadata meta,
+                                                                     EntityMetadata.Property property, List<Object[]> ranges) {
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(ranges.size());
+        for (Object[] range : ranges) {
+            futures.add(AsyncDBTool.supply(() -> scanRange(entityClass, meta, property, range)));
+        }
+        return futures;
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // 更新数据
+    // 被 ChangeTracker 跟踪的实体只更新变化的列, 没有变化时不执行并返回 0
+    public static <T> int update(T entity, String whereColumn, Object whereValue) {
+        Sharding.Spec spec = Sharding.routeWrite(entity.getClass());
+        if (spec != null) {
+            return spec.shardOfEntity(entity).call(() -> update(entity, whereColumn, whereValue));
+        }
+        EntityMetadata meta = EntityMetadata.of(entity.getClass());
+        Object[] values = meta.getValues(entity, 1);
+        BitSet changed = ChangeTracker.changedColumns(entity, values);
+        if (changed != null) {
+            return updateChanged(entity, meta, values, changed, whereColumn, whereValue);
+        }
+
+        String sql = String.format("update %s set %s where %s = ?",
+                meta.getTableName(), meta.getUpdateSetClause(), meta.toColumn(whereColumn));
 
         // 添加where值到参数列表
-        values.add(whereValue);
-        int result = DBConnectionTool.executeUpdate(sql, values.toArray());
+        values[values.length - 1] = whereValue;
+        int result = Database.current().executeUpdate(sql, meta.getTypeHandlers(), values);
+        invalidateCache(meta);
         ColorLogger.logSQL("UPDATE: " + entity.getClass().getSimpleName());
         return result;
     }
 
+    private static <T> int updateChanged(T entity, EntityMetadata meta, Object[] values, BitSet changed,
+                                         String whereColumn, Object whereValue) {
+        if (changed.isEmpty()) {
+            ColorLogger.logSQL("UPDATE SKIPPED (unchanged): " + entity.getClass().getSimpleName());
+            return 0;
+        }
+        String sql = String.format("update %s set %s where %s = ?",
+                meta.getTableName(), meta.getUpdateSetClause(changed), meta.toColumn(whereColumn));
+        Object[] params = new Object[changed.cardinality() + 1];
+        TypeHandler<?>[] fieldHandlers = meta.getTypeHandlers();
+        TypeHandler<?>[] handlers = new TypeHandler<?>[changed.cardinality()];
+        int p = 0;
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            handlers[p] = fieldHandlers[i];
+            params[p++] = values[i];
+        }
+        params[p] = whereValue;
+
+        int result = Database.current().executeUpdate(sql, handlers, params);
+        invalidateCache(meta);
+        // 提交后以写入的值作为新快照, 回滚时保留旧快照
+        int length = values.length - 1;
+        DBConnectionTool.afterCommit(() -> ChangeTracker.snapshot(entity, values, length));
+        ColorLogger.logSQL("UPDATE: " + entity.getClass().getSimpleName() + " " + changed.cardinality() + " columns");
+        return result;
+    }
+
     // 删除数据
     public static <T> int delete(Class<T> entityClass, String whereColumn, Object whereValue) {
-        String tableName = getTableName(entityClass);
-        String whereClause = ChangeCharTool.toSnakeCase(whereColumn) + " = ?";
-        String sql = String.format("delete from %s where %s", tableName, whereClause);
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        Sharding.Spec spec = Sharding.routeWrite(entityClass);
+        if (spec != null) {
+            if (spec.isKey(meta, whereColumn)) {
+                return spec.shardOf(whereValue).call(() -> delete(entityClass, whereColumn, whereValue));
+            }
+            return Sharding.scatter(spec.shards, () -> delete(entityClass, whereColumn, whereValue))
+                    .stream().mapToInt(Integer::intValue).sum();
+        }
+        String sql = String.format("delete from %s where %s = ?", meta.getTableName(), meta.toColumn(whereColumn));
         int result = DBConnectionTool.executeUpdate(sql, whereValue);
+        invalidateCache(meta);
         ColorLogger.logSQL("DELETE: " + entityClass.getSimpleName());
         return result;
     }
 
     // 插入单条数据
     public static <T> int insert(T entity) {
-        Class<?> clazz = entity.getClass();
-        String tableName = getTableName(clazz);
-        List<String> columns = getFieldNames(clazz);
-        List<Object> values = getFieldValues(entity);
-
-        String columnList = columns.stream()
-                .map(ChangeCharTool::toSnakeCase)
-                .collect(Collectors.joining(", "));
-
-        String placeholders = "?, ".repeat(columns.size() - 1) + "?";
-        String sql = String.format("insert into %s (%s) values (%s)",
-                tableName, columnList, placeholders);
-
-        int result = DBConnectionTool.executeUpdate(sql, values.toArray());
+        Sharding.Spec spec = Sharding.routeWrite(entity.getClass());
+        if (spec != null) {
+            return spec.shardOfEntity(entity).call(() -> insert(entity));
+        }
+        EntityMetadata meta = EntityMetadata.of(entity.getClass());
+        int result = Database.current().executeUpdate(meta.getInsertSql(), meta.getTypeHandlers(),
+                meta.getValues(entity, 0));
+        invalidateCache(meta);
         ColorLogger.logSQL("INSERT: " + entity.getClass().getSimpleName());
         return result;
     }
 
     // 批量插入数据
     public static <T> int batchInsert(List<T> entities) {
-        if (entities == null || entities.isEmpty()) return 0;
+        int[] counts = batchInsert(entities, DBConnectionTool.getBatchSize(), 0);
+        return Arrays.stream(counts).sum();
+    }
 
-        T first = entities.get(0);
-        Class<?> clazz = first.getClass();
-        String tableName = getTableName(clazz);
-        List<String> columns = getFieldNames(clazz);
+    // 分块批量插入数据, 返回每块插入行数; commitInterval > 0 时每该数量的块提交一次
+    // 分片实体按分片分组插入, 返回各分片的块行数依次拼接
+    public static <T> int[] batchInsert(List<T> entities, int batchSize, int commitInterval) {
+        if (entities == null || entities.isEmpty()) return new int[0];
+
+        Sharding.Spec spec = Sharding.routeWrite(entities.getFirst().getClass());
+        if (spec != null) {
+            List<int[]> parts = new ArrayList<>();
+            for (Map.Entry<Database, List<Integer>> group : spec.groupRows(entities).entrySet()) {
+                List<T> rows = group.getValue().stream().map(entities::get).toList();
+                parts.add(group.getKey().call(() -> batchInsert(rows, batchSize, commitInterval)));
+            }
+            return parts.stream().flatMapToInt(Arrays::stream).toArray();
+        }
+        EntityMetadata meta = EntityMetadata.of(entities.getFirst().getClass());
+        EntityAccessor<Object> accessor = meta.getAccessor();
+        int[] result = accessor != null
+                ? Database.current().executeBoundBatch(meta.getInsertSql(), entities, accessor::bind, batchSize, commitInterval)
+                : Database.current().executeBatch(meta.getInsertSql(), entities,
+                        entity -> meta.getValues(entity, 0), meta.getTypeHandlers(), batchSize, commitInterval);
+        invalidateCache(meta);
+        ColorLogger.logSQL("BATCH INSERT: " + entities.getFirst().getClass().getSimpleName());
+        return result;
+    }
 
-        String columnList = columns.stream()
-                .map(ChangeCharTool::toSnakeCase)
-                .collect(Collectors.joining(", "));
+    // 按键列批量更新全部字段, 返回每行影响行数
+    public static <T> int[] batchUpdate(List<T> entities, String keyColumn) {
+        if (entities == null || entities.isEmpty()) return new int[0];
 
-        String placeholder = "(" + "?, ".repeat(columns.size() - 1) + "?)";
-        String placeholders = (placeholder + ", ").repeat(entities.size() - 1) + placeholder;
+        Sharding.Spec spec = Sharding.routeWrite(entities.getFirst().getClass());
+        if (spec != null) {
+            return Sharding.perRow(spec, entities, rows -> batchUpdate(rows, keyColumn));
+        }
+
+        EntityMetadata meta = EntityMetadata.of(entities.getFirst().getClass());
+        EntityMetadata.Property key = requireProperty(meta, keyColumn);
+        String sql = String.format("update %s set %s where %s = ?",
+                meta.getTableName(), meta.getUpdateSetClause(), key.getColumn());
+        TypeHandler<?>[] handlers = Arrays.copyOf(meta.getTypeHandlers(), meta.getProperties().size() + 1);
+        handlers[handlers.length - 1] = handlers[key.getIndex()];
+        int[] result = Database.current().executeBatchPerRow(sql, entities, entity -> {
+            Object[] values = meta.getValues(entity, 1);
+            values[values.length - 1] = key.get(entity);
+            return values;
+        }, handlers, DBConnectionTool.getBatchSize());
+        invalidateCache(meta);
+        ColorLogger.logSQL("BATCH UPDATE: " + entities.getFirst().getClass().getSimpleName());
+        return result;
+    }
 
-        String sql = String.format("insert into %s (%s) values %s",
-                tableName, columnList, placeholders);
+    // 按主键字段(@Id 或 id)批量删除
+    public static <T> int[] deleteByIds(Class<T> entityClass, Collection<?> ids) {
+        return deleteByIds(entityClass, requireId(EntityMetadata.of(entityClass)).getName(), ids);
+    }
 
-        // 展平参数列表
-        List<Object> allValues = new ArrayList<>();
-        for (T entity : entities) {
-            allValues.addAll(getFieldValues(entity));
+    // IN 列表按 IN_LIST_SIZE 分块批量删除, 返回每块删除行数
+    // 最后一块用最后一个值补齐, 所有块共用同一条语句
+    // 分片实体: 键列为分片键时按分片分组删除, 否则在所有分片上删除, 返回各分片的块行数依次拼接
+    public static <T> int[] deleteByIds(Class<T> entityClass, String keyColumn, Collection<?> ids) {
+        if (ids == null || ids.isEmpty()) return new int[0];
+
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        Sharding.Spec spec = Sharding.routeWrite(entityClass);
+        if (spec != null) {
+            List<int[]> parts = new ArrayList<>();
+            if (spec.isKey(meta, keyColumn)) {
+                for (Map.Entry<Database, ? extends List<?>> group : spec.groupValues(ids).entrySet()) {
+                    parts.add(group.getKey().call(() -> deleteByIds(entityClass, keyColumn, group.getValue())));
+                }
+            } else {
+                parts = Sharding.scatter(spec.shards, () -> deleteByIds(entityClass, keyColumn, ids));
+            }
+            return parts.stream().flatMapToInt(Arrays::stream).toArray();
+        }
+        EntityMetadata.Property key = requireProperty(meta, keyColumn);
+        List<?> idList = new ArrayList<>(ids);
+        int size = Math.min(IN_LIST_SIZE, idList.size());
+        List<Object[]> chunks = new ArrayList<>((idList.size() + size - 1) / size);
+        for (int from = 0; from < idList.size(); from += size) {
+            Object[] params = new Object[size];
+            for (int i = 0; i < size; i++) {
+                params[i] = idList.get(Math.min(from + i, idList.size() - 1));
+            }
+            chunks.add(params);
         }
 
-        int result = DBConnectionTool.executeBatch(sql, allValues.toArray());
-        ColorLogger.logSQL("BATCH INSERT: " + entities.getFirst().getClass().getSimpleName());
+        String sql = String.format("delete from %s where %s in (%s)", meta.getTableName(), key.getColumn(),
+                String.join(", ", Collections.nCopies(size, "?")));
+        int[] result = DBConnectionTool.executeBatchPerRow(sql, chunks, Function.identity(), DBConnectionTool.getBatchSize());
+        invalidateCache(meta);
+        ColorLogger.logSQL("BATCH DELETE: " + entityClass.getSimpleName());
+        return result;
+    }
+
+    // 插入或更新单条数据, keyColumns 为空时按主键字段判断
+    public static <T> int upsert(T entity, String... keyColumns) {
+        Sharding.Spec spec = Sharding.routeWrite(entity.getClass());
+        if (spec != null) {
+            return spec.shardOfEntity(entity).call(() -> upsert(entity, keyColumns));
+        }
+        EntityMetadata meta = EntityMetadata.of(entity.getClass());
+        int result = Database.current().executeUpdate(upsertSql(meta, keyColumns), meta.getTypeHandlers(),
+                meta.getValues(entity, 0));
+        invalidateCache(meta);
+        ColorLogger.logSQL("UPSERT: " + entity.getClass().getSimpleName());
+        return result;
+    }
+
+    // 批量插入或更新, 返回每行结果
+    // MySQL 插入为1、更新为2、未变化为0; 其他数据库插入或更新均为1, 驱动不返回行数时为 Statement.SUCCESS_NO_INFO
+    public static <T> int[] batchUpsert(List<T> entities, String... keyColumns) {
+        if (entities == null || entities.isEmpty()) return new int[0];
+
+        Sharding.Spec spec = Sharding.routeWrite(entities.getFirst().getClass());
+        if (spec != null) {
+            return Sharding.perRow(spec, entities, rows -> batchUpsert(rows, keyColumns));
+        }
+
+        EntityMetadata meta = EntityMetadata.of(entities.getFirst().getClass());
+        EntityAccessor<Object> accessor = meta.getAccessor();
+        String sql = upsertSql(meta, keyColumns);
+        int[] result = accessor != null
+                ? Database.current().executeBoundBatchPerRow(sql, entities, accessor::bind, DBConnectionTool.getBatchSize())
+                : Database.current().executeBatchPerRow(sql, entities, entity -> meta.getValues(entity, 0),
+                        meta.getTypeHandlers(), DBConnectionTool.getBatchSize());
+        invalidateCache(meta);
+        ColorLogger.logSQL("BATCH UPSERT: " + entities.getFirst().getClass().getSimpleName());
         return result;
     }
 
-    // 创建表
+    // 创建表, 分片实体在所有分片上创建
     public static <T> int createTable(Class<T> entityClass, String columnsDefinition) {
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            return Sharding.scatter(spec.shards, () -> createTable(entityClass, columnsDefinition)).getFirst();
+        }
         String tableName = getTableName(entityClass);
         String sql = String.format("create table if not exists %s (%s)", tableName, columnsDefinition);
         return DBConnectionTool.executeDDL(sql);
     }
 
-    // 删除表
+    // 删除表, 分片实体在所有分片上删除
     public static <T> int dropTable(Class<T> entityClass) {
-        String tableName = getTableName(entityClass);
-        String sql = String.format("drop table if exists %s", tableName);
-        return DBConnectionTool.executeDDL(sql);
+        Sharding.Spec spec = Sharding.route(entityClass);
+        if (spec != null) {
+            return Sharding.scatter(spec.shards, () -> dropTable(entityClass)).getFirst();
+        }
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        String sql = String.format("drop table if exists %s", meta.getTableName());
+        int result = DBConnectionTool.executeDDL(sql);
+        QueryCache.invalidate(cacheTable(meta));
+        return result;
     }
 
     // 辅助方法
 
+    // 开启缓存的实体在事务外走查询缓存, 事务中可能读到未提交数据因此不缓存
+    private static <T> List<T> cachedQuery(Class<T> entityClass, EntityMetadata meta, String sql, Object... params) {
+        return cachedQuery(meta, sql, () -> new EntityMapper<>(entityClass), params);
+    }
+
+    // 缓存按实体类开启, 结果可以是实体或投影类型
+    private static <R> List<R> cachedQuery(EntityMetadata meta, String sql, Supplier<RowMapper<R>> mapper,
+                                           Object... params) {
+        if (!QueryCache.isEnabled(meta.getEntityClass()) || DBConnectionTool.isInTransaction()) {
+            return DBConnectionTool.query(sql, mapper.get(), params);
+        }
+        return QueryCache.get(cacheTable(meta), sql, params, () -> DBConnectionTool.query(sql, mapper.get(), params));
+    }
+
+    // column 为 null 时查询全部行; 分片规则与 findAll/findBy 相同
+    private static <R> List<R> projectionQuery(Class<R> targetClass, Projection projection, String column, Object value) {
+        EntityMetadata meta = projection.getMetadata();
+        Sharding.Spec spec = Sharding.route(meta.getEntityClass());
+        if (spec != null) {
+            if (column != null && spec.isKey(meta, column)) {
+                return spec.shardOf(value).call(() -> projectionQuery(targetClass, projection, column, value));
+            }
+            return concat(Sharding.scatter(spec.shards, () -> projectionQuery(targetClass, projection, column, value)));
+        }
+        if (column == null) {
+            return cachedQuery(meta, projection.getSelectSql(), () -> projection.mapper(targetClass));
+        }
+        String sql = projection.getSelectSql() + " where " + meta.toColumn(column) + " = ?";
+        return cachedQuery(meta, sql, () -> projection.mapper(targetClass), value);
+    }
+
+    private static EntityMetadata.Property[] resolveSortKeys(EntityMetadata meta, SortKey[] sortKeys) {
+        if (sortKeys == null || sortKeys.length == 0) {
+            throw new JDBCException("键集分页至少需要一个排序字段");
+        }
+        EntityMetadata.Property[] keys = new EntityMetadata.Property[sortKeys.length];
+        for (int i = 0; i < sortKeys.length; i++) {
+            keys[i] = meta.getProperty(sortKeys[i].getField());
+            if (keys[i] == null) {
+                throw new JDBCException("排序字段不存在: " + meta.getEntityClass().getSimpleName()
+                        + "." + sortKeys[i].getField());
+            }
+        }
+        return keys;
+    }
+
+    // 令牌签名, 防止令牌用于不同的表或排序条件
+    private static int keysetSignature(EntityMetadata meta, EntityMetadata.Property[] keys, SortKey[] sortKeys) {
+        int h = meta.getTableName().hashCode();
+        for (int i = 0; i < keys.length; i++) {
+            h = 31 * h + keys[i].getColumn().hashCode();
+            h = 31 * h + (sortKeys[i].isAscending() ? 1 : 2);
+        }
+        return h;
+    }
+
+    // where (a > ?) or (a = ? and b < ?) order by a asc, b desc limit ?
+    // 排序值为 NULL 时按当前数据库默认的 NULL 排序位置改用 is null / is not null 条件
+    // 多取一行用于判断是否还有下一页
+    private static <T> KeysetPage<T> findPage(Class<T> entityClass, EntityMetadata meta, int pageSize, Object[] lastValues,
+                                              EntityMetadata.Property[] keys, SortKey[] sortKeys) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("每页条数必须大于0");
+        }
+        StringBuilder sql = new StringBuilder(meta.getSelectSql());
+        List<Object> params = new ArrayList<>();
+        if (lastValues != null) {
+            Dialect dialect = DBConnectionTool.getDialect();
+            // 无法识别的数据库且排序值中没有 NULL 时按排序列不含 NULL 处理
+            boolean nullAware = dialect != Dialect.OTHER || Arrays.asList(lastValues).contains(null);
+            boolean nullsLow = nullAware && dialect.nullsSortLow();
+            StringJoiner where = new StringJoiner(" or ", " where ", "");
+            where.setEmptyValue(" where 1 = 0");
+            for (int i = 0; i < keys.length; i++) {
+                String column = keys[i].getColumn();
+                boolean nullsBefore = nullsLow == sortKeys[i].isAscending();
+                // 最后一行该列为 NULL 且 NULL 排在最后时, 该列之后没有更大的值
+                if (lastValues[i] == null && !nullsBefore) {
+                    continue;
+                }
+                StringBuilder clause = new StringBuilder("(");
+                for (int j = 0; j < i; j++) {
+                    if (lastValues[j] == null) {
+                        clause.append(keys[j].getColumn()).append(" is null and ");
+                    } else {
+                        clause.append(keys[j].getColumn()).append(" = ? and ");
+                        params.add(lastValues[j]);
+                    }
+                }
+                if (lastValues[i] == null) {
+                    clause.append(column).append(" is not null");
+                } else {
+                    String seek = column + (sortKeys[i].isAscending() ? " > ?" : " < ?");
+                    if (nullAware && !nullsBefore && !keys[i].getType().isPrimitive()) {
+                        seek = "(" + seek + " or " + column + " is null)";
+                    }
+                    clause.append(seek);
+                    params.add(lastValues[i]);
+                }
+                where.add(clause.append(')'));
+            }
+            sql.append(where);
+        }
+        sql.append(" order by ");
+        for (int i = 0; i < keys.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(keys[i].getColumn()).append(sortKeys[i].isAscending() ? " asc" : " desc");
+        }
+        sql.append(" limit ?");
+        params.add(pageSize + 1);
+
+        List<T> rows = cachedQuery(entityClass, meta, sql.toString(), params.toArray());
+        boolean hasNext = rows.size() > pageSize;
+        List<T> items = hasNext ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        if (items.isEmpty()) {
+            return new KeysetPage<>(items, null, null);
+        }
+
+        T last = items.getLast();
+        Object[] pageLastValues = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            pageLastValues[i] = keys[i].get(last);
+        }
+        String nextToken = hasNext ? KeysetToken.encode(keysetSignature(meta, keys, sortKeys), pageLastValues) : null;
+        return new KeysetPage<>(items, pageLastValues, nextToken);
+    }
+
+    private static int defaultPartitions() {
+        ConnectionPool pool = DBConnectionTool.getPool();
+        if (pool == null) {
+            throw new JDBCException("数据库未初始化: " + Database.current().getName());
+        }
+        return Math.max(1, Math.min(pool.getConfig().getMaxSize(),
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    // 该列为 NULL 的行单独作为一段
+    private static final Object[] NULL_RANGE = new Object[2];
+
+    // 扫描区间 {下界, 上界}: 首段无下界, 末段无上界, 中间段为 [下界, 上界); NULL_RANGE 放在最前
+    private static List<Object[]> scanRanges(EntityMetadata meta, EntityMetadata.Property property, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("分段数必须大于0");
+        }
+        String sql = String.format("select min(%s), max(%s) from %s",
+                property.getColumn(), property.getColumn(), meta.getTableName());
+        Object[] bounds = DBConnectionTool.query(sql, rs -> new Object[]{rs.getObject(1), rs.getObject(2)}).getFirst();
+        List<Object[]> ranges = new ArrayList<>();
+        ranges.add(NULL_RANGE);
+        if (bounds[0] == null) {
+            return ranges;
+        }
+        if (!(bounds[0] instanceof Number lo) || !(bounds[1] instanceof Number hi)) {
+            throw new JDBCException("并行扫描列必须是数值类型: " + property.getName());
+        }
+        long min = floorLong(lo);
+        long max = hi.longValue();
+        long step;
+        try {
+            // 分别除再相减, 避免 max - min 溢出
+            step = Math.max(1, Math.addExact(Math.subtractExact(max / partitions, min / partitions), 1));
+        } catch (ArithmeticException e) {
+            step = Long.MAX_VALUE;
+        }
+        Long lower = null;
+        long previous = min;
+        for (int i = 1; i < partitions; i++) {
+            long boundary = boundary(min, i, step);
+            if (boundary > max || boundary <= previous) {
+                break;
+            }
+            ranges.add(new Object[]{lower, boundary});
+            lower = boundary;
+            previous = boundary;
+        }
+        ranges.add(new Object[]{lower, null});
+        return ranges;
+    }
+
+    // 整数列直接取 long, 避免经 double 转换丢失 2^53 以上的精度; 小数列向下取整
+    private static long floorLong(Number value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal.setScale(0, RoundingMode.FLOOR).longValue();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return (long) Math.floor(value.doubleValue());
+        }
+        return value.longValue();
+    }
+
+    // min + i * step, 溢出时取 Long.MAX_VALUE(超过任何上界)
+    private static long boundary(long min, int i, long step) {
+        try {
+            return Math.addExact(min, Math.multiplyExact(step, i));
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static <T> List<T> scanRange(Class<T> entityClass, EntityMetadata meta, EntityMetadata.Property property,
+                                         Object[] range) {
+        String column = property.getColumn();
+        StringBuilder sql = new StringBuilder(meta.getSelectSql()).append(" where ");
+        List<Object> params = new ArrayList<>(2);
+        if (range == NULL_RANGE) {
+            sql.append(column).append(" is null");
+        } else {
+            if (range[0] != null) {
+                sql.append(column).append(" >= ?");
+                params.add(range[0]);
+            } else {
+                sql.append(column).append(" is not null");
+            }
+            if (range[1] != null) {
+                sql.append(" and ").append(column).append(" < ?");
+                params.add(range[1]);
+            }
+            sql.append(" order by ").append(column);
+        }
+        return DBConnectionTool.query(sql.toString(), new EntityMapper<>(entityClass), params.toArray());
+    }
+
+    // criteria 为 null 时不带条件
+    private static <T> Criteria<T> criteria(Class<T> entityClass, Criteria<T> criteria) {
+        if (criteria == null) {
+            return Criteria.of(entityClass);
+        }
+        if (criteria.getEntityClass() != entityClass) {
+            throw new IllegalArgumentException("查询条件不属于实体类: " + entityClass.getSimpleName());
+        }
+        return criteria;
+    }
+
+    // 执行聚合查询, 返回单库或各分片结果行的拼接, 由调用方合并
+    private static <T, R> List<R> aggregate(Criteria<T> criteria, String sql, RowMapper<R> mapper) {
+        return aggregate(criteria, sql, mapper, null);
+    }
+    // groupKey 不为空时各分片的结果已按分组值排序, 归并后仍按分组值有序
+    private static <T, R> List<R> aggregate(Criteria<T> criteria, String sql, RowMapper<R> mapper, Function<R, ?> groupKey) {
+        EntityMetadata meta = criteria.getMetadata();
+        Supplier<List<R>> action = () -> cachedQuery(meta, sql, () -> mapper, criteria.parameters(false));
+        Sharding.Spec spec = Sharding.route(meta.getEntityClass());
+        if (spec == null) {
+            return action.get();
+        }
+        Object keyValue = criteria.equalityValue(spec.key);
+        if (keyValue != null) {
+            return spec.shardOf(keyValue).call(action);
+        }
+        List<List<R>> parts = Sharding.scatter(spec.shards, action);
+        return groupKey == null ? concat(parts)
+                : Sharding.mergeSorted(parts, Comparator.comparing(groupKey, valueComparator(spec.nullsSortLow())));
+    }
+
+    private static <T, V> V extreme(Class<T> entityClass, String field, Criteria<T> criteria, String function) {
+        Criteria<T> where = criteria(entityClass, criteria);
+        EntityMetadata meta = where.getMetadata();
+        EntityMetadata.Property property = requireProperty(meta, field);
+        TypeHandler<?> handler = meta.getTypeHandlers()[property.getIndex()];
+        String sql = where.sql(String.format("select %s(%s) from %s",
+                function, property.getColumn(), meta.getTableName()), "", false);
+        V result = null;
+        for (Object part : aggregate(where, sql, rs -> handler.read(rs, 1))) {
+            @SuppressWarnings("unchecked")
+            V value = (V) part;
+            result = function.equals("min") ? least(result, value) : greatest(result, value);
+        }
+        return result;
+    }
+
+    // 较小/较大的非 NULL 值, 用于合并各分片的聚合结果
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <V> V least(V a, V b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return ((Comparable) a).compareTo(b) <= 0 ? a : b;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <V> V greatest(V a, V b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return ((Comparable) a).compareTo(b) >= 0 ? a : b;
+    }
+
+    private static EntityMetadata.Property numericProperty(EntityMetadata meta, String name) {
+        EntityMetadata.Property property = requireProperty(meta, name);
+        Class<?> type = property.getType();
+        boolean numeric = type.isPrimitive() ? type != boolean.class && type != char.class
+                : Number.class.isAssignableFrom(type);
+        if (!numeric) {
+            throw new IllegalArgumentException("聚合字段必须是数值类型: " + property.getName());
+        }
+        return property;
+    }
+
+    private static EntityMetadata.Property requireProperty(EntityMetadata meta, String name) {
+        EntityMetadata.Property property = meta.getProperty(name);
+        if (property == null) {
+            throw new JDBCException("字段不存在: " + meta.getEntityClass().getSimpleName() + "." + name);
+        }
+        return property;
+    }
+
+    private static EntityMetadata.Property requireId(EntityMetadata meta) {
+        EntityMetadata.Property id = meta.getIdProperty();
+        if (id == null) {
+            throw new JDBCException("实体没有主键字段(@Id 或 id): " + meta.getEntityClass().getSimpleName());
+        }
+        return id;
+    }
+
+    private static String upsertSql(EntityMetadata meta, String[] keyColumns) {
+        List<String> keys = new ArrayList<>();
+        if (keyColumns.length == 0) {
+            keys.add(requireId(meta).getColumn());
+        }
+        for (String name : keyColumns) {
+            keys.add(requireProperty(meta, name).getColumn());
+        }
+        return DBConnectionTool.getDialect().upsertSql(meta.getTableName(), meta.getColumnNames(), keys);
+    }
+
+    // 非默认实例的缓存按实例名区分, 避免不同库的同名表共用缓存
+    private static String cacheTable(EntityMetadata meta) {
+        return QueryCache.cacheTable(meta.getTableName());
+    }
+
+    private static void requireUnsharded(Class<?> entityClass) {
+        if (Sharding.route(entityClass) != null) {
+            throw new JDBCException("分片实体不支持该操作, 请通过 Database.call 指定分片: " + entityClass.getSimpleName());
+        }
+    }
+
+    private static <T> List<T> concat(List<List<T>> parts) {
+        List<T> result = new ArrayList<>();
+        for (List<T> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    private static <T> List<T> page(List<T> rows, int limit, int offset) {
+        int from = Math.min(offset, rows.size());
+        return new ArrayList<>(rows.subList(from, Math.min(rows.size(), from + limit)));
+    }
+
+    // 按字段比较实体, 与数据库的 order by 一致; 降序时整体反转
+    static <T> Comparator<T> propertyComparator(EntityMetadata.Property property, boolean ascending, boolean nullsLow) {
+        Comparator<T> comparator = Comparator.comparing(property::get, valueComparator(nullsLow));
+        return ascending ? comparator : comparator.reversed();
+    }
+    // 比较字段值: nullsLow 为 true 时 NULL 视为最小值, 否则视为最大值
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Object> valueComparator(boolean nullsLow) {
+        return (a, b) -> {
+            if (a == null || b == null) {
+                return a == b ? 0 : (a == null) == nullsLow ? -1 : 1;
+            }
+            return ((Comparable) a).compareTo(b);
+        };
+    }
+
+    // 写入后失效该表缓存, 事务中推迟到提交或回滚后
+    private static void invalidateCache(EntityMetadata meta) {
+        String tableName = cacheTable(meta);
+        DBConnectionTool.afterCompletion(() -> QueryCache.invalidate(tableName));
+    }
+
     public static <T> String getTableName(Class<T> entityClass) {
-        return DBConnectionTool.getPrefix() + entityClass.getSimpleName().toLowerCase();
+        return EntityMetadata.of(entityClass).getTableName();
     }
 
     public static <T> String getColumns(Class<T> entityClass) {
-        return Arrays.stream(entityClass.getDeclaredFields())
-                .map(Field::getName)
-                .map(ChangeCharTool::toSnakeCase)
-                .collect(Collectors.joining(", "));
+        return EntityMetadata.of(entityClass).getColumnList();
     }
 
     public static <T> List<String> getFieldNames(Class<T> entityClass) {
-        return Arrays.stream(entityClass.getDeclaredFields())
-                .map(Field::getName)
-                .collect(Collectors.toList());
+        return new ArrayList<>(EntityMetadata.of(entityClass).getFieldNames());
     }
 
     public static <T> List<Object> getFieldValues(T entity) {
-        return Arrays.stream(entity.getClass().getDeclaredFields())
-                .peek(f -> f.setAccessible(true))
-                .map(f -> {
-                    try {
-                        return f.get(entity);
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException("无法访问字段: " + f.getName(), e);
-                    }
-                })
-                .collect(Collectors.toList());
+        return new ArrayList<>(Arrays.asList(EntityMetadata.of(entity.getClass()).getValues(entity, 0)));
     }
 }
-
@@ -0,0 +1,1134 @@
+package SQLTool;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// 数据库实例: 持有连接信息、连接池、副本路由和线程本地事务状态, 同一 JVM 中可同时连接多个数据库
+// DBConnectionTool 和 DMLTool 的静态方法作用于当前线程绑定的实例(见 call/run), 未绑定时作用于默认实例
+public class Database {
+    private static final Database DEFAULT = new Database("default");
+    private static final ThreadLocal<Database> localBound = new ThreadLocal<>();
+
+    private final String name;
+    private String dbUrl;
+    private String username;
+    private String password;
+    private volatile String prefix = "m_";
+    private volatile ConnectionPool pool;
+    // AsyncDBTool 的并发许可, 数量与连接池最大连接数一致
+    private volatile Semaphore asyncPermits;
+    private volatile Dialect dialect = Dialect.OTHER;
+    private volatile ReplicaRouter router;
+    // 副本健康检查间隔
+    private volatile long replicaHealthCheckMillis = 5000;
+    // 本线程写入后该时间内的读取走主库, 0 表示不启用
+    private volatile long readYourWritesMillis = 0;
+    // 分块批处理默认每块行数
+    private volatile int batchSize = 1000;
+    // 流式查询每次从服务端拉取的行数（MySQL 需配合 useCursorFetch=true）
+    private volatile int fetchSize = 1000;
+    // queryBuffered 结果超过该行数或估算字节数时写入临时文件
+    private volatile int spillRows = 100_000;
+    private volatile long spillBytes = 64L << 20;
+
+
+    // 线程本地事务状态
+    private final ThreadLocal<Connection> localConnection = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> localTransactionOwner = new ThreadLocal<>();
+    private final ThreadLocal<Long> localTransactionStart = new ThreadLocal<>();
+    private final ThreadLocal<List<Runnable>> localAfterCommit = new ThreadLocal<>();
+    private final ThreadLocal<List<Runnable>> localAfterCompletion = new ThreadLocal<>();
+    private final ThreadLocal<int[]> localPrimaryPin = ThreadLocal.withInitial(() -> new int[1]);
+    private final ThreadLocal<Long> localLastWrite = new ThreadLocal<>();
+
+    public Database(String name) {
+        this.name = Objects.requireNonNull(name, "名称为空");
+    }
+
+    // DBConnectionTool 静态方法使用的默认实例
+    public static Database getDefault() {
+        return DEFAULT;
+    }
+
+    // 当前线程绑定的实例, 未绑定时为默认实例
+    public static Database current() {
+        Database bound = localBound.get();
+        return bound != null ? bound : DEFAULT;
+    }
+
+    static boolean isBound() {
+        return localBound.get() != null;
+    }
+
+
+//    在当前线程绑定本实例执行, 期间 DBConnectionTool 和 DMLTool 的静态方法都作用于本实例
+
+    public <T> T call(Supplier<T> action) {
+        Database previous = localBound.get();
+        localBound.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                localBound.remove();
+            } else {
+                localBound.set(previous);
+            }
+        }
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void init(String url, String user, String pass) {
+        init(url, user, pass, new PoolConfig());
+    }
+
+    public synchronized void init(String url, String user, String pass, PoolConfig poolConfig) {
+        dbUrl = Objects.requireNonNull(url, "URL为空");
+        username = Objects.requireNonNull(user, "用户名为空");
+        password = Objects.requireNonNull(pass, "密码为空");
+        Objects.requireNonNull(poolConfig, "连接池配置为空");
+        dialect = Dialect.fromUrl(url);
+
+        ConnectionPool old = pool;
+        pool = new ConnectionPool(dbUrl, username, password, poolConfig);
+        asyncPermits = new Semaphore(poolConfig.getMaxSize(), true);
+        if (old != null) {
+            old.close();
+        }
+    }
+
+
+//    关闭连接池
+
+    public synchronized void shutdown() {
+        ConnectionPool old = pool;
+        pool = null;
+        if (old != null) {
+            old.close();
+        }
+        clearReplicas();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    Semaphore getAsyncPermits() {
+        Semaphore permits = asyncPermits;
+        if (permits == null || pool == null) {
+            throw new JDBCException("数据库未初始化: " + name);
+        }
+        return permits;
+    }
+
+
+//    添加只读副本: 事务外的查询路由到副本, 写入、DDL 和事务内的操作始终走主库
+
+    public void addReplica(String url, String user, String pass) {
+        addReplica(url, user, pass, new PoolConfig());
+    }
+
+    public synchronized void addReplica(String url, String user, String pass, PoolConfig poolConfig) {
+        Objects.requireNonNull(url, "URL为空");
+        Objects.requireNonNull(poolConfig, "连接池配置为空");
+        if (router == null) {
+            router = new ReplicaRouter(replicaHealthCheckMillis);
+        }
+        router.add(url, user, pass, poolConfig);
+    }
+
+    public synchronized void clearReplicas() {
+        ReplicaRouter old = router;
+        router = null;
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    public ReplicaRouter getReplicaRouter() {
+        return router;
+    }
+
+    public void setLoadBalance(ReplicaRouter.LoadBalance loadBalance) {
+        ReplicaRouter current = router;
+        if (current == null) {
+            throw new JDBCException("未配置只读副本");
+        }
+        current.setLoadBalance(Objects.requireNonNull(loadBalance, "负载均衡策略为空"));
+    }
+
+    // 对之后添加第一个副本时创建的路由生效
+    public void setReplicaHealthCheckMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("健康检查间隔必须大于0");
+        }
+        replicaHealthCheckMillis = millis;
+    }
+
+    public void setReadYourWritesMillis(long millis) {
+        readYourWritesMillis = millis;
+    }
+
+
+//    读己之写: 当前线程固定读主库, 可嵌套, 需与 unpinPrimary 成对调用
+
+    public void pinPrimary() {
+        localPrimaryPin.get()[0]++;
+    }
+
+    public void unpinPrimary() {
+        int[] depth = localPrimaryPin.get();
+        if (depth[0] > 0) {
+            depth[0]--;
+        }
+    }
+
+    // 单次调用固定读主库
+    public <T> T onPrimary(Supplier<T> action) {
+        pinPrimary();
+        try {
+            return action.get();
+        } finally {
+            unpinPrimary();
+        }
+    }
+
+    private boolean readsFromPrimary() {
+        if (localPrimaryPin.get()[0] > 0) {
+            return true;
+        }
+        long window = readYourWritesMillis;
+        if (window <= 0) {
+            return false;
+        }
+        Long lastWrite = localLastWrite.get();
+        return lastWrite != null && System.nanoTime() - lastWrite < TimeUnit.MILLISECONDS.toNanos(window);
+    }
+
+    private void markWrite() {
+        if (router != null && readYourWritesMillis > 0) {
+            localLastWrite.set(System.nanoTime());
+        }
+    }
+
+
+//    借出读连接: 配置了副本且未固定主库时从副本借出, 副本全部不可用时回退到主库
+
+    private Connection borrowReadConnection() throws SQLException {
+        ReplicaRouter current = router;
+        if (current != null && !readsFromPrimary()) {
+            long start = System.nanoTime();
+            Connection conn = current.borrow();
+            if (conn != null) {
+                SqlMetrics.recordAcquire(System.nanoTime() - start);
+                return conn;
+            }
+        }
+        return borrowConnection();
+    }
+
+
+//    从连接池借出连接
+
+    private Connection borrowConnection() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            throw new JDBCException("数据库未初始化: " + name);
+        }
+        long start = System.nanoTime();
+        Connection conn = current.borrow();
+        SqlMetrics.recordAcquire(System.nanoTime() - start);
+        return conn;
+    }
+
+
+//    开启事务
+
+    public void beginTransaction() throws SQLException {
+        if (localConnection.get() != null) {
+            throw new JDBCException("事务已经开始");
+        }
+
+        Connection conn = openTransaction();
+        localConnection.set(conn);
+        localTransactionOwner.set(true);
+        localTransactionStart.set(System.nanoTime());
+    }
+
+    // 借出连接并关闭自动提交, 供线程本地事务和 TransactionContext 共用
+    Connection openTransaction() throws SQLException {
+        Connection conn = borrowConnection();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            releaseConnection(conn);
+            throw e;
+        }
+        ColorLogger.logTransaction(">>> BEGIN TRANSACTION");
+        return conn;
+    }
+
+    // 提交或回滚后恢复自动提交并归还连接
+    void endTransaction(Connection conn, long start, boolean commit) throws SQLException {
+        boolean committed = false;
+        try {
+            if (commit) {
+                conn.commit();
+                committed = true;
+            } else {
+                conn.rollback();
+            }
+        } finally {
+            restoreAutoCommit(conn);
+            releaseConnection(conn);
+            SqlMetrics.recordTransaction(System.nanoTime() - start, committed);
+            ColorLogger.logTransaction(committed ? "<<< COMMIT TRANSACTION" : "!!! ROLLBACK TRANSACTION");
+        }
+    }
+
+
+//    提交事务
+
+    public void commitTransaction() throws SQLException {
+        Connection conn = localConnection.get();
+        if (conn == null) {
+            throw new JDBCException("没有可用事务");
+        }
+
+        long start = localTransactionStart.get();
+        List<Runnable> hooks = localAfterCommit.get();
+        List<Runnable> completion = localAfterCompletion.get();
+        try {
+            endTransaction(conn, start, true);
+        } finally {
+            clearTransactionState();
+            runHooks(completion);
+        }
+        if (hooks != null) {
+            for (Runnable hook : hooks) {
+                runHook(hook);
+            }
+        }
+    }
+
+
+//    注册事务提交后执行的操作: 不在事务中时立即执行, 事务回滚时丢弃
+
+    public void afterCommit(Runnable action) {
+        if (localConnection.get() == null) {
+            runHook(action);
+            return;
+        }
+        List<Runnable> hooks = localAfterCommit.get();
+        if (hooks == null) {
+            hooks = new ArrayList<>();
+            localAfterCommit.set(hooks);
+        }
+        hooks.add(action);
+    }
+
+//    注册事务结束(提交或回滚)后执行的操作: 不在事务中时立即执行
+
+    public void afterCompletion(Runnable action) {
+        if (localConnection.get() == null) {
+            runHook(action);
+            return;
+        }
+        List<Runnable> hooks = localAfterCompletion.get();
+        if (hooks == null) {
+            hooks = new ArrayList<>();
+            localAfterCompletion.set(hooks);
+        }
+        hooks.add(action);
+    }
+
+    private static void runHooks(List<Runnable> hooks) {
+        if (hooks != null) {
+            for (Runnable hook : hooks) {
+                runHook(hook);
+            }
+        }
+    }
+
+    // 回调异常不影响已提交的事务
+    static void runHook(Runnable hook) {
+        try {
+            hook.run();
+        } catch (RuntimeException e) {
+            ColorLogger.logError("afterCommit", e);
+        }
+    }
+
+    public boolean isInTransaction() {
+        return localConnection.get() != null;
+    }
+
+
+//    回滚事务
+
+    public void rollbackTransaction() {
+        Connection conn = localConnection.get();
+        if (conn == null) {
+            ColorLogger.logTransaction("!!! ROLLBACK TRANSACTION");
+            return;
+        }
+        List<Runnable> completion = localAfterCompletion.get();
+        try {
+            endTransaction(conn, localTransactionStart.get(), false);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            clearTransactionState();
+            runHooks(completion);
+        }
+    }
+
+
+//    清理线程本地事务状态
+
+    private void clearTransactionState() {
+        localConnection.remove();
+        localTransactionOwner.remove();
+        localTransactionStart.remove();
+        localAfterCommit.remove();
+        localAfterCompletion.remove();
+    }
+
+    private static void restoreAutoCommit(Connection conn) {
+        try {
+            if (conn != null && !conn.isClosed()) {
+                conn.setAutoCommit(true); // 恢复自动提交
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+//    执行SQL更新
+
+    public int executeUpdate(String sql, Object... params) {
+        return executeUpdate(localConnection.get(), sql, params);
+    }
+
+    // 实体写入: handlers 按参数位置给出预先解析的类型处理器
+    int executeUpdate(String sql, TypeHandler<?>[] handlers, Object[] params) {
+        return executeUpdate(localConnection.get(), sql, handlers, params);
+    }
+
+    int executeUpdate(Connection txConn, String sql, Object[] params) {
+        return executeUpdate(txConn, sql, null, params);
+    }
+
+    // txConn 为 null 时从连接池借出连接并在执行后归还, 否则在该事务连接上执行
+    private int executeUpdate(Connection txConn, String sql, TypeHandler<?>[] handlers, Object[] params) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        long start = System.nanoTime();
+
+        try {
+            // 添加日志
+            ColorLogger.logSQL(sql, params);
+            conn = txConn != null ? txConn : borrowConnection();
+            markWrite();
+            ps = prepareStatement(conn, sql);
+            bindParameters(ps, handlers, params);
+            // 记录结果
+            int result = ps.executeUpdate();
+            SqlMetrics.recordUpdate(sql, System.nanoTime() - start, result);
+            ColorLogger.logResult(result);
+            return result;
+        } catch (SQLException e) {
+            SqlMetrics.recordError(sql, System.nanoTime() - start);
+            ColorLogger.logError(sql, e);
+            throw new JDBCException("更新失败: " + sql, e);
+        } finally {
+            releaseStatement(conn, ps);
+
+            // 非事务操作需要关闭连接
+            if (txConn == null && conn != null) {
+                closeConnection(conn);
+            }
+        }
+
+    }
+
+
+//    执行批处理操作
+
+    public int executeBatch(String sql, Object... params) {
+        Connection txConn = localConnection.get();
+        Connection conn = null;
+        PreparedStatement ps = null;
+        long start = System.nanoTime();
+
+        try {
+            // 添加批量日志
+            ColorLogger.logBatch(sql, Collections.singletonList(params));
+            conn = txConn != null ? txConn : borrowConnection();
+            markWrite();
+            ps = prepareStatement(conn, sql);
+            bindParameters(ps, params);
+
+            int results = ps.executeUpdate();
+            SqlMetrics.recordUpdate(sql, System.nanoTime() - start, results);
+            ColorLogger.logResults(results);
+            return results;
+        } catch (SQLException e) {
+            SqlMetrics.recordError(sql, System.nanoTime() - start);
+            ColorLogger.logError(sql, e);
+            rollbackSilently(conn);
+            throw new JDBCException("批量执行失败: " + sql, e);
+        } finally {
+            releaseStatement(conn, ps);
+
+            // 非事务操作需要关闭连接
+            if (txConn == null && conn != null) {
+                closeConnection(conn);
+            }
+        }
+    }
+
+
+//    分块批处理: 每块 addBatch 后 executeBatch, 返回每块影响行数
+
+    public int[] executeBatch(String sql, List<Object[]> paramsList) {
+        return executeBatch(sql, paramsList, Function.identity(), batchSize, 0);
+    }
+
+    public int[] executeBatch(String sql, List<Object[]> paramsList, int chunkSize, int commitInterval) {
+        return executeBatch(sql, paramsList, Function.identity(), chunkSize, commitInterval);
+    }
+
+
+//    分块批处理（按行惰性取参数）
+//    非事务调用时整体在一个事务中执行, commitInterval > 0 时每执行该数量的块提交一次;
+//    已在事务中时不提交, 由外层事务决定提交或回滚
+
+    public <R> int[] executeBatch(String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                                         int chunkSize, int commitInterval) {
+        return executeBatch(localConnection.get(), sql, rows, toParams, chunkSize, commitInterval);
+    }
+
+    <R> int[] executeBatch(Connection txConn, String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                                  int chunkSize, int commitInterval) {
+        return runBatch(txConn, sql, rows, binder(toParams, null), chunkSize, commitInterval, null);
+    }
+
+    <R> int[] executeBatch(String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                           TypeHandler<?>[] handlers, int chunkSize, int commitInterval) {
+        return runBatch(localConnection.get(), sql, rows, binder(toParams, handlers), chunkSize, commitInterval, null);
+    }
+
+    // 由 binder 直接绑定每行参数(如生成的实体访问器), 不经过 Object[]
+    <R> int[] executeBoundBatch(String sql, List<R> rows, RowBinder<? super R> binder, int chunkSize,
+                                int commitInterval) {
+        return runBatch(localConnection.get(), sql, rows, binder, chunkSize, commitInterval, null);
+    }
+
+
+//    分块批处理并返回每行的执行结果(驱动返回的原始计数, 可能为 Statement.SUCCESS_NO_INFO)
+
+    public <R> int[] executeBatchPerRow(String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                                               int chunkSize) {
+        return executeBatchPerRow(sql, rows, toParams, null, chunkSize);
+    }
+
+    <R> int[] executeBatchPerRow(String sql, List<R> rows, Function<? super R, Object[]> toParams,
+                                 TypeHandler<?>[] handlers, int chunkSize) {
+        return executeBoundBatchPerRow(sql, rows, binder(toParams, handlers), chunkSize);
+    }
+
+    <R> int[] executeBoundBatchPerRow(String sql, List<R> rows, RowBinder<? super R> binder, int chunkSize) {
+        int[] rowCounts = new int[rows.size()];
+        runBatch(localConnection.get(), sql, rows, binder, chunkSize, 0, rowCounts);
+        return rowCounts;
+    }
+
+    private static <R> RowBinder<R> binder(Function<? super R, Object[]> toParams, TypeHandler<?>[] handlers) {
+        return (ps, row) -> bindParameters(ps, handlers, toParams.apply(row));
+    }
+
+    // rowCounts 不为 null 时按行写入每条语句的执行结果
+    private <R> int[] runBatch(Connection txConn, String sql, List<R> rows, RowBinder<? super R> binder,
+                               int chunkSize, int commitInterval, int[] rowCounts) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("批处理块大小必须大于0");
+        }
+        int chunks = (rows.size() + chunkSize - 1) / chunkSize;
+        int[] counts = new int[chunks];
+        if (chunks == 0) {
+            return counts;
+        }
+
+        boolean inTransaction = txConn != null;
+        Connection conn = null;
+        PreparedStatement ps = null;
+        boolean restoreAutoCommit = false;
+        int chunk = 0;
+        long start = System.nanoTime();
+
+        try {
+            ColorLogger.logBatch(sql, rows.size(), chunkSize);
+            conn = txConn != null ? txConn : borrowConnection();
+            markWrite();
+            if (!inTransaction && conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            ps = prepareStatement(conn, sql);
+
+            long total = 0;
+            for (; chunk < chunks; chunk++) {
+                int from = chunk * chunkSize;
+                int to = Math.min(from + chunkSize, rows.size());
+                for (int i = from; i < to; i++) {
+                    binder.bind(ps, rows.get(i));
+                    ps.addBatch();
+                }
+                int[] results = ps.executeBatch();
+                if (rowCounts != null) {
+                    System.arraycopy(results, 0, rowCounts, from, Math.min(results.length, to - from));
+                }
+                counts[chunk] = sumBatchCounts(results);
+                total += counts[chunk];
+
+                if (!inTransaction && commitInterval > 0 && (chunk + 1) % commitInterval == 0) {
+                    conn.commit();
+                }
+            }
+            if (!inTransaction) {
+                conn.commit();
+            }
+            SqlMetrics.recordUpdate(sql, System.nanoTime() - start, total);
+            ColorLogger.logBatchResult(chunks, total);
+            return counts;
+        } catch (SQLException e) {
+            SqlMetrics.recordError(sql, System.nanoTime() - start);
+            ColorLogger.logError(sql, e);
+            if (!inTransaction) {
+                rollbackSilently(conn);
+            }
+            throw new JDBCException("批量执行失败(第" + (chunk + 1) + "/" + chunks + "块): " + sql, e);
+        } finally {
+            releaseStatement(conn, ps);
+            if (restoreAutoCommit) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                }
+            }
+
+            // 非事务操作需要关闭连接
+            if (!inTransaction && conn != null) {
+                closeConnection(conn);
+            }
+        }
+    }
+
+    // 驱动未返回具体行数(SUCCESS_NO_INFO)时按1行计
+    private static int sumBatchCounts(int[] results) {
+        int sum = 0;
+        for (int r : results) {
+            if (r >= 0) {
+                sum += r;
+            } else if (r == Statement.SUCCESS_NO_INFO) {
+                sum += 1;
+            }
+        }
+        return sum;
+    }
+
+
+//    静默回滚
+
+    private static void rollbackSilently(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                // 忽略回滚异常
+            }
+        }
+    }
+
+
+//    查询并映射结果
+
+    public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) {
+        return query(localConnection.get(), sql, mapper, params);
+    }
+
+    <T> List<T> query(Connection txConn, String sql, RowMapper<T> mapper, Object[] params) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        long start = System.nanoTime();
+
+        try {
+            // 添加日志
+            ColorLogger.logSQL(sql, params);
+            conn = txConn != null ? txConn : borrowReadConnection();
+            ps = prepareStatement(conn, sql);
+            bindParameters(ps, params);
+            rs = ps.executeQuery();
+
+            List<T> results = new ArrayList<>();
+            while (rs.next()) {
+                results.add(mapper.mapRow(rs));
+            }
+            SqlMetrics.recordQuery(sql, System.nanoTime() - start, results.size());
+            ColorLogger.logResult(results.size());
+            return results;
+        } catch (SQLException e) {
+            SqlMetrics.recordError(sql, System.nanoTime() - start);
+            ColorLogger.logError(sql, e);
+            throw new JDBCException("查询失败: " + sql, e);
+        } finally {
+            closeResultSet(rs);
+            releaseStatement(conn, ps);
+
+            // 非事务操作需要关闭连接
+            if (txConn == null && conn != null) {
+                closeConnection(conn);
+            }
+        }
+    }
+
+
+//    流式查询: 连接、语句和结果集保持打开直到流关闭, 逐行惰性映射
+//    调用方必须关闭返回的流（推荐 try-with-resources）, 读到末尾时也会自动释放
+
+    public <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params) {
+        return stream(localConnection.get(), sql, mapper, params);
+    }
+
+    <T> Stream<T> stream(Connection txConn, String sql, RowMapper<T> mapper, Object[] params) {
+        boolean inTransaction = txConn != null;
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        boolean restoreAutoCommit = false;
+        long start = System.nanoTime();
+
+        try {
+            ColorLogger.logSQL(sql, params);
+            conn = txConn != null ? txConn : borrowReadConnection();
+            // 部分驱动(如 PostgreSQL)只有关闭自动提交时才按 fetchSize 使用服务端游标
+            if (!inTransaction && conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            bindParameters(ps, params);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            SqlMetrics.recordError(sql, System.nanoTime() - start);
+            ColorLogger.logError(sql, e);
+            new QueryCursor<>(sql, conn, ps, rs, mapper, inTransaction, restoreAutoCommit, start).close();
+            throw new JDBCException("查询失败: " + sql, e);
+        }
+
+        QueryCursor<T> cursor = new QueryCursor<>(sql, conn, ps, rs, mapper, inTransaction, restoreAutoCommit, start);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+
+//    列式查询: 数值列直接读入基本类型数组, 字符串列字典编码, 适合大量数值行的分析查询
+
+    public ColumnBatch queryColumns(String sql, Object... params) {
+        return queryColumns(localConnection.get(), sql, params);
+    }
+
+    ColumnBatch queryColumns(Connection txConn, String sql, Object[] params) {
+        boolean inTransaction = txConn != null;
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        boolean restoreAutoCommit = false;
+        long start = System.nanoTime();
+
+        try {
+            ColorLogger.logSQL(sql, params);
+            conn = inTransaction ? txConn : borrowReadConnection();
+            // 与流式查询相同, 关闭自动提交后部分驱动才按 fetchSize 分批拉取
+            if (!inTransaction && conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            bindParameters(ps, params);
+            rs = ps.executeQuery();
+
+            ColumnBatch batch = ColumnBatch.forResultSet(rs);
+            while (rs.next()) {
+                batch.append(rs);
+            }
+            SqlMetrics.recordQuery(sql, System.nanoTime() - start, batch.getRowCount());
+            ColorLogger.logResult(batch.getRowCount());
+            return batch;
+        } catch (SQLException e) {
+            SqlMetrics.recordError(sql, System.nanoTime() - start);
+            ColorLogger.logError(sql, e);
+            throw new JDBCException("查询失败: " + sql, e);
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+            if (restoreAutoCommit) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                }
+            }
+
+            // 非事务操作需要关闭连接
+            if (!inTransaction && conn != null) {
+                closeConnection(conn);
+            }
+        }
+    }
+
+
+//    流式逐行处理, 返回处理的行数
+
+    public <T> long forEach(String sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object... params) {
+        long[] count = {0};
+        try (Stream<T> stream = stream(sql, mapper, params)) {
+            stream.forEach(row -> {
+                consumer.accept(row);
+                count[0]++;
+            });
+        }
+        return count[0];
+    }
+
+
+//    可落盘的查询: 按 fetchSize 流式读取, 超过落盘阈值后写入内存映射的临时文件, 返回的列表使用完毕需关闭
+
+    public <T> SpillList<T> queryBuffered(String sql, RowMapper<T> mapper, SpillList.Codec<T> codec, Object... params) {
+        SpillList<T> rows = new SpillList<>(codec, spillRows, spillBytes);
+        try {
+            forEach(sql, mapper, rows::add, params);
+        } catch (RuntimeException e) {
+            rows.close();
+            throw e;
+        }
+        return rows;
+    }
+
+
+//    执行DDL语句（建表、删表等）
+
+    public int executeDDL(String ddl) {
+        return executeDDL(localConnection.get(), ddl);
+    }
+
+    int executeDDL(Connection txConn, String ddl) {
+        Connection conn = null;
+        Statement stmt = null;
+        long start = System.nanoTime();
+
+        try {
+            // 添加日志
+            ColorLogger.logDDL(ddl);
+            conn = txConn != null ? txConn : borrowConnection();
+            markWrite();
+            stmt = conn.createStatement();
+            int result = stmt.executeUpdate(ddl);
+            SqlMetrics.recordUpdate(ddl, System.nanoTime() - start, result);
+            // 记录DDL结果
+            ColorLogger.logDDL(ddl);
+            return result == 0 ? 1 : 0; // DDL通常返回0
+        } catch (SQLException e) {
+            SqlMetrics.recordError(ddl, System.nanoTime() - start);
+            ColorLogger.logError(ddl, e);
+            throw new JDBCException("DDL执行失败: " + ddl, e);
+        } finally {
+            closeStatement(stmt);
+
+            // 非事务操作需要关闭连接
+            if (txConn == null && conn != null) {
+                closeConnection(conn);
+            }
+        }
+    }
+
+
+//    在事务中执行操作, 块内通过静态入口的调用作用于本实例
+
+    public void doInTransaction(TransactionBlock block) {
+        if (current() != this) {
+            run(() -> doInTransaction(block));
+            return;
+        }
+        try {
+            beginTransaction();
+            block.execute();
+            commitTransaction();
+        } catch (Exception e) {
+            try {
+                rollbackTransaction();
+            } catch (Exception rollbackEx) {
+                e.addSuppressed(rollbackEx);
+            }
+            throw new JDBCException("事务执行失败", e);
+        }
+    }
+
+    // 辅助方法
+    //设置占位符, 按值的类型选择 TypeHandler
+    private static void bindParameters(PreparedStatement ps, Object[] params) throws SQLException {
+        if (params != null) {
+            for (int i = 0; i < params.length; i++) {
+                TypeHandlers.bind(ps, i + 1, params[i]);
+            }
+        }
+    }
+
+    // handlers 覆盖的参数用给定的处理器绑定, 其余按值的类型查找
+    private static void bindParameters(PreparedStatement ps, TypeHandler<?>[] handlers, Object[] params)
+            throws SQLException {
+        if (handlers == null) {
+            bindParameters(ps, params);
+            return;
+        }
+        if (params != null) {
+            for (int i = 0; i < params.length; i++) {
+                if (i < handlers.length) {
+                    TypeHandlers.bind(ps, i + 1, handlers[i], params[i]);
+                } else {
+                    TypeHandlers.bind(ps, i + 1, params[i]);
+                }
+            }
+        }
+    }
+
+    // 非事务连接归还连接池
+    private void closeConnection(Connection conn) {
+        releaseConnection(conn);
+    }
+
+    private void releaseConnection(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        ConnectionPool current = ownerOf(conn);
+        if (current != null) {
+            current.release(conn);
+        } else {
+            try {
+                if (!conn.isClosed()) {
+                    conn.close();
+                }
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    // 连接所属的连接池: 主库或某个副本
+    private ConnectionPool ownerOf(Connection conn) {
+        ConnectionPool current = pool;
+        ReplicaRouter replicas = router;
+        if (replicas == null || (current != null && current.owns(conn))) {
+            return current;
+        }
+        ConnectionPool replica = replicas.ownerOf(conn);
+        return replica != null ? replica : current;
+    }
+
+    // 优先使用连接上缓存的语句
+    private PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        ConnectionPool current = ownerOf(conn);
+        if (current == null) {
+            return conn.prepareStatement(sql);
+        }
+        return current.prepareStatement(conn, sql);
+    }
+
+    // 缓存语句只清空参数, 其余语句直接关闭
+    private void releaseStatement(Connection conn, PreparedStatement ps) {
+        if (ps == null) {
+            return;
+        }
+        ConnectionPool current = ownerOf(conn);
+        if (current == null || !current.releaseStatement(conn, ps)) {
+            closeStatement(ps);
+        }
+    }
+
+    private static void closeStatement(Statement stmt) {
+        if (stmt != null) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private static void closeResultSet(ResultSet rs) {
+        if (rs != null) {
+            try {
+                rs.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int size) {
+        fetchSize = size;
+    }
+
+    // 落盘阈值: 行数和估算字节数, 任一超过即落盘
+    public void setSpillThreshold(int rows, long bytes) {
+        if (rows < 0 || bytes < 0) {
+            throw new IllegalArgumentException("落盘阈值不能小于0");
+        }
+        spillRows = rows;
+        spillBytes = bytes;
+    }
+
+    public int getSpillRows() {
+        return spillRows;
+    }
+
+    public long getSpillBytes() {
+        return spillBytes;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("批处理块大小必须大于0");
+        }
+        batchSize = size;
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    // URL 无法识别方言时手动指定
+    public void setDialect(Dialect d) {
+        dialect = Objects.requireNonNull(d, "方言为空");
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public String toString() {
+        return "Database[" + name + "]";
+    }
+
+
+    // 流式查询游标, 持有连接、语句和结果集直到关闭
+    private final class QueryCursor<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+        private final String sql;
+        private final Connection conn;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private final boolean inTransaction;
+        private final boolean restoreAutoCommit;
+        private final long start;
+        private long rows;
+        private boolean failed;
+        private boolean closed;
+
+        QueryCursor(String sql, Connection conn, PreparedStatement ps, ResultSet rs, RowMapper<T> mapper,
+                    boolean inTransaction, boolean restoreAutoCommit, long start) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.sql = sql;
+            this.conn = conn;
+            this.ps = ps;
+            this.rs = rs;
+            this.mapper = mapper;
+            this.inTransaction = inTransaction;
+            this.restoreAutoCommit = restoreAutoCommit;
+            this.start = start;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.mapRow(rs));
+                rows++;
+                return true;
+            } catch (SQLException e) {
+                failed = true;
+                SqlMetrics.recordError(sql, System.nanoTime() - start);
+                ColorLogger.logError(sql, e);
+                close();
+                throw new JDBCException("查询失败: " + sql, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeResultSet(rs);
+            closeStatement(ps);
+            if (restoreAutoCommit) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                }
+            }
+            // 非事务操作需要关闭连接
+            if (!inTransaction && conn != null) {
+                closeConnection(conn);
+            }
+            if (rs != null && !failed) {
+                SqlMetrics.recordQuery(sql, System.nanoTime() - start, rows);
+                ColorLogger.logResult((int) Math.min(rows, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    // 按行绑定批处理参数
+    @FunctionalInterface
+    interface RowBinder<R> {
+        void bind(PreparedStatement ps, R row) throws SQLException;
+    }
+}
@@ -0,0 +1,143 @@
+package SQLTool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 数据库方言: 由 JDBC URL 识别, 用于生成各数据库特有的 SQL(如 upsert)
+public enum Dialect {
+    MYSQL,
+    POSTGRESQL,
+    SQLITE,
+    H2,
+    ORACLE,
+    SQLSERVER,
+    OTHER;
+
+    // 连接类到方言的缓存, 同一驱动的连接类只对应一种数据库
+    private static final Map<Class<?>, Dialect> byConnectionClass = new ConcurrentHashMap<>();
+
+    public static Dialect fromUrl(String url) {
+        if (url == null) {
+            return OTHER;
+        }
+        String u = url.toLowerCase(Locale.ROOT);
+        if (u.startsWith("jdbc:mysql:") || u.startsWith("jdbc:mariadb:")) return MYSQL;
+        if (u.startsWith("jdbc:postgresql:")) return POSTGRESQL;
+        if (u.startsWith("jdbc:sqlite:")) return SQLITE;
+        if (u.startsWith("jdbc:h2:")) return H2;
+        if (u.startsWith("jdbc:oracle:")) return ORACLE;
+        if (u.startsWith("jdbc:sqlserver:")) return SQLSERVER;
+        return OTHER;
+    }
+
+    // 连接所属数据库的方言, 按连接的 URL 识别; 用于只持有语句或连接、不知道所属实例的场合
+    public static Dialect of(Connection conn) throws SQLException {
+        Dialect dialect = byConnectionClass.get(conn.getClass());
+        if (dialect == null) {
+            dialect = fromUrl(conn.getMetaData().getURL());
+            byConnectionClass.put(conn.getClass(), dialect);
+        }
+        return dialect;
+    }
+
+
+//    默认排序中 NULL 是否视为最小值(升序排在最前, 降序排在最后), 用于键集分页的 NULL 排序值
+
+    public boolean nullsSortLow() {
+        switch (this) {
+            case MYSQL:
+            case SQLITE:
+            case H2:
+            case SQLSERVER:
+                return true;
+            case POSTGRESQL:
+            case ORACLE:
+                return false;
+            default:
+                throw new JDBCException("无法确定当前数据库的 NULL 排序顺序: " + this);
+        }
+    }
+
+
+//    插入或更新: 按 keyColumns 判断记录是否存在, 参数顺序与 columns 一致
+
+    public String upsertSql(String table, List<String> columns, List<String> keyColumns) {
+        String columnList = String.join(", ", columns);
+        String placeholders = String.join(", ", Collections.nCopies(columns.size(), "?"));
+        List<String> updateColumns = columns.stream().filter(c -> !keyColumns.contains(c)).toList();
+
+        switch (this) {
+            case MYSQL: {
+                StringJoiner set = new StringJoiner(", ");
+                for (String c : updateColumns) {
+                    set.add(c + " = values(" + c + ")");
+                }
+                // 没有非主键列时用无副作用的赋值代替
+                if (updateColumns.isEmpty()) {
+                    set.add(keyColumns.getFirst() + " = " + keyColumns.getFirst());
+                }
+                return String.format("insert into %s (%s) values (%s) on duplicate key update %s",
+                        table, columnList, placeholders, set);
+            }
+            case POSTGRESQL:
+            case SQLITE: {
+                if (updateColumns.isEmpty()) {
+                    return String.format("insert into %s (%s) values (%s) on conflict (%s) do nothing",
+                            table, columnList, placeholders, String.join(", ", keyColumns));
+                }
+                StringJoiner set = new StringJoiner(", ");
+                for (String c : updateColumns) {
+                    set.add(c + " = excluded." + c);
+                }
+                return String.format("insert into %s (%s) values (%s) on conflict (%s) do update set %s",
+                        table, columnList, placeholders, String.join(", ", keyColumns), set);
+            }
+            case H2:
+                return String.format("merge into %s (%s) key (%s) values (%s)",
+                        table, columnList, String.join(", ", keyColumns), placeholders);
+            case ORACLE: {
+                StringJoiner select = new StringJoiner(", ");
+                for (String c : columns) {
+                    select.add("? " + c);
+                }
+                return mergeSql(table, "(select " + select + " from dual) s", columns, keyColumns, updateColumns);
+            }
+            case SQLSERVER:
+                return mergeSql(table, "(values (" + placeholders + ")) as s (" + columnList + ")",
+                        columns, keyColumns, updateColumns) + ";";
+            default:
+                throw new JDBCException("当前数据库不支持 upsert: " + this);
+        }
+    }
+
+    // 标准 MERGE 语句, source 需带别名 s, 目标表别名为 d
+    private static String mergeSql(String table, String source, List<String> columns, List<String> keyColumns,
+                                   List<String> updateColumns) {
+        StringJoiner on = new StringJoiner(" and ");
+        for (String k : keyColumns) {
+            on.add("d." + k + " = s." + k);
+        }
+        StringBuilder sql = new StringBuilder("merge into ").append(table).append(" d using ").append(source)
+                .append(" on (").append(on).append(')');
+        if (!updateColumns.isEmpty()) {
+            StringJoiner set = new StringJoiner(", ");
+            for (String c : updateColumns) {
+                set.add("d." + c + " = s." + c);
+            }
+            sql.append(" when matched then update set ").append(set);
+        }
+        StringJoiner values = new StringJoiner(", ");
+        for (String c : columns) {
+            values.add("s." + c);
+        }
+        sql.append(" when not matched then insert (").append(String.join(", ", columns))
+                .append(") values (").append(values).append(')');
+        return sql.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package SQLTool;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+// 实体访问器: 由注解处理器为 @Table 实体生成, 直接访问字段和构造器, 代替反射
+// 字段下标按声明顺序, 与 EntityMetadata.getProperties 一致
+public interface EntityAccessor<T> {
+    Class<T> entityClass();
+
+    // @Table 指定的表名, 未指定时返回 null
+    String tableName();
+
+    // 编译时生成的 select/insert 语句和 update 的 set 子句; 表名依赖运行时前缀(未指定 @Table 表名)时返回 null
+    String selectSql();
+
+    String insertSql();
+
+    String updateSetClause();
+
+    String[] fieldNames();
+
+    String[] columnNames();
+
+    Class<?>[] fieldTypes();
+
+    // 主键字段下标, 没有主键字段时返回 -1
+    int idIndex();
+
+    // 是否只能通过全参构造器创建实例(记录类或没有无参构造器)
+    boolean constructorBased();
+
+    T newInstance();
+
+    // 参数按字段声明顺序排列
+    T newInstance(Object[] args);
+
+    Object get(T entity, int index);
+
+    void set(T entity, int index, Object value);
+
+    boolean isWritable(int index);
+
+    // columns[i] 为第 i 个字段在结果集中的列下标, 0 表示结果集中没有该字段
+    T mapRow(ResultSet rs, int[] columns) throws SQLException;
+
+    // 按字段声明顺序绑定到第 1..n 个参数
+    void bind(PreparedStatement ps, T entity) throws SQLException;
+}
@@ -0,0 +1,44 @@
+package SQLTool;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 实体访问器注册表: 优先使用手工注册的访问器, 其次查找注解处理器生成的 <实体名>_Mapper 类
+// 都没有时返回 null, 由 EntityMetadata 回退到反射; 注册应在首次使用实体之前完成
+public class EntityAccessors {
+    private EntityAccessors() {}
+
+    private static final Map<Class<?>, Optional<EntityAccessor<?>>> accessors = new ConcurrentHashMap<>();
+
+    public static <T> void register(Class<T> entityClass, EntityAccessor<T> accessor) {
+        accessors.put(entityClass, Optional.of(accessor));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityAccessor<T> find(Class<T> entityClass) {
+        return (EntityAccessor<T>) accessors.computeIfAbsent(entityClass, EntityAccessors::load).orElse(null);
+    }
+
+    // 生成类与实体同包, 嵌套类的外部类名以下划线连接: Outer.Inner -> Outer_Inner_Mapper
+    public static String generatedName(String packageName, String binarySimpleName) {
+        String simple = binarySimpleName.replace('$', '_') + "_Mapper";
+        return packageName.isEmpty() ? simple : packageName + "." + simple;
+    }
+
+    private static Optional<EntityAccessor<?>> load(Class<?> entityClass) {
+        String binaryName = entityClass.getName();
+        String packageName = entityClass.getPackageName();
+        String simple = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        try {
+            Class<?> generated = Class.forName(generatedName(packageName, simple), true, entityClass.getClassLoader());
+            EntityAccessor<?> accessor = (EntityAccessor<?>) generated.getConstructor().newInstance();
+            return accessor.entityClass() == entityClass ? Optional.of(accessor) : Optional.empty();
+        } catch (ClassNotFoundException e) {
+            return Optional.empty();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            ColorLogger.logError("实体访问器加载失败, 改用反射: " + entityClass.getName(), e);
+            return Optional.empty();
+        }
+    }
+}
@@ -1,34 +1,274 @@
 package SQLTool;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
-// 实体映射器
+// 实体映射器: 每个结果集只解析一次列元数据, 之后按列下标直接读取并通过 MethodHandle 写入字段
 public class EntityMapper<T> implements RowMapper<T> {
     private final Class<T> entityClass;
-    private final List<Field> fields;
+    private final EntityMetadata metadata;
+    // 投影查询时非空, 用于创建延迟加载字段
+    private final Projection projection;
+
+    // 当前绑定的结果集及列绑定
+    private ResultSet boundResultSet;
+    private ColumnBinding[] bindings;
+    private boolean tracked;
+    private int lazyKeyIndex;
+    // 使用生成的访问器整行映射时非空: 各字段在结果集中的列下标
+    private int[] accessorColumns;
 
     public EntityMapper(Class<T> entityClass) {
+        this(entityClass, null);
+    }
+
+    EntityMapper(Class<T> entityClass, Projection projection) {
         this.entityClass = entityClass;
-        this.fields = Arrays.asList(entityClass.getDeclaredFields());
-        this.fields.forEach(f -> f.setAccessible(true));
+        this.metadata = EntityMetadata.of(entityClass);
+        this.projection = projection != null && projection.hasLazyColumns() ? projection : null;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public T mapRow(ResultSet rs) throws SQLException {
+        if (rs != boundResultSet) {
+            bind(rs);
+        }
         try {
-            T entity = entityClass.getDeclaredConstructor().newInstance();
-            for (Field field : fields) {
-                String columnName = ChangeCharTool.toSnakeCase(field.getName());
-                Object value = rs.getObject(columnName);
-                field.set(entity, value);
-            }
-            return entity;
-        } catch (Exception e) {
+            if (accessorColumns != null) {
+                Object entity = metadata.getAccessor().mapRow(rs, accessorColumns);
+                if (tracked) {
+                    ChangeTracker.track(entity, metadata);
+                }
+                return (T) entity;
+            }
+            if (metadata.isConstructorBased()) {
+                Object[] args = new Object[metadata.getProperties().size()];
+                for (ColumnBinding binding : bindings) {
+                    args[binding.property.getIndex()] = binding.read(rs);
+                }
+                if (projection != null) {
+                    projection.fillLazy(rs, lazyKeyIndex, args);
+                }
+                fillPrimitiveDefaults(args);
+                Object entity = metadata.newInstance(args);
+                if (tracked) {
+                    ChangeTracker.snapshot(entity, args, args.length);
+                }
+                return (T) entity;
+            }
+            Object entity = metadata.newInstance();
+            for (ColumnBinding binding : bindings) {
+                binding.write(rs, entity);
+            }
+            if (projection != null) {
+                projection.setLazy(rs, lazyKeyIndex, entity);
+            }
+            if (tracked) {
+                ChangeTracker.track(entity, metadata);
+            }
+            return (T) entity;
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
             throw new SQLException("实体映射失败: " + entityClass.getName(), e);
         }
     }
+
+
+//    按结果集列名匹配实体字段, 未匹配的列和字段均忽略
+
+    private void bind(ResultSet rs) throws SQLException {
+        ResultSetMetaData rsMeta = rs.getMetaData();
+        Map<String, EntityMetadata.Property> byColumn = new HashMap<>();
+        for (EntityMetadata.Property property : metadata.getProperties()) {
+            byColumn.put(property.getColumn().toLowerCase(Locale.ROOT), property);
+            byColumn.putIfAbsent(property.getName().toLowerCase(Locale.ROOT), property);
+        }
+
+        List<ColumnBinding> list = new ArrayList<>();
+        int count = rsMeta.getColumnCount();
+        for (int i = 1; i <= count; i++) {
+            String label = rsMeta.getColumnLabel(i).toLowerCase(Locale.ROOT);
+            EntityMetadata.Property property = byColumn.remove(label);
+            if (property != null) {
+                list.add(createBinding(i, property));
+            }
+        }
+        this.bindings = list.toArray(new ColumnBinding[0]);
+        // 有延迟加载字段时仍逐列绑定, 以便在构造前填入 Lazy
+        if (metadata.getAccessor() != null && projection == null) {
+            int[] columns = new int[metadata.getProperties().size()];
+            for (ColumnBinding binding : bindings) {
+                columns[binding.property.getIndex()] = binding.column;
+            }
+            this.accessorColumns = columns;
+        }
+        this.tracked = ChangeTracker.isEnabled(entityClass);
+        this.lazyKeyIndex = projection == null ? 0 : projection.keyIndex(rsMeta);
+        this.boundResultSet = rs;
+    }
+
+    private ColumnBinding createBinding(int column, EntityMetadata.Property property) {
+        Class<?> type = property.getType();
+        // 免装箱绑定需要字段的 MethodHandle, 使用生成的访问器时按对象读写
+        boolean writable = !metadata.isConstructorBased() && property.isWritable() && property.getField() != null;
+        if (writable && type == long.class) {
+            return new LongBinding(column, property);
+        } else if (writable && type == int.class) {
+            return new IntBinding(column, property);
+        } else if (writable && type == double.class) {
+            return new DoubleBinding(column, property);
+        } else if (writable && type == boolean.class) {
+            return new BooleanBinding(column, property);
+        }
+        return new ObjectBinding(column, property, readerFor(type));
+    }
+
+    private void fillPrimitiveDefaults(Object[] args) {
+        for (EntityMetadata.Property property : metadata.getProperties()) {
+            int index = property.getIndex();
+            if (args[index] == null && property.getType().isPrimitive()) {
+                args[index] = Array.get(Array.newInstance(property.getType(), 1), 0);
+            }
+        }
+    }
+
+
+//    按字段类型选择 ResultSet 的类型化读取方法, 与参数绑定共用 TypeHandlers 注册表
+
+    static ValueReader readerFor(Class<?> type) {
+        TypeHandler<?> handler = TypeHandlers.forType(type);
+        return handler::read;
+    }
+
+    // 按列下标读取值
+    @FunctionalInterface
+    interface ValueReader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    // 列与字段的绑定
+    private abstract static class ColumnBinding {
+        final int column;
+        final EntityMetadata.Property property;
+
+        ColumnBinding(int column, EntityMetadata.Property property) {
+            this.column = column;
+            this.property = property;
+        }
+
+        abstract void write(ResultSet rs, Object entity) throws Throwable;
+
+        abstract Object read(ResultSet rs) throws SQLException;
+    }
+
+    private static final class ObjectBinding extends ColumnBinding {
+        private final ValueReader reader;
+        private final boolean primitive;
+
+        ObjectBinding(int column, EntityMetadata.Property property, ValueReader reader) {
+            super(column, property);
+            this.reader = reader;
+            this.primitive = property.getType().isPrimitive();
+        }
+
+        @Override
+        void write(ResultSet rs, Object entity) throws SQLException {
+            Object value = reader.read(rs, column);
+            // 基本类型字段遇到 NULL 保持默认值
+            if (value != null || !primitive) {
+                property.set(entity, value);
+            }
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return reader.read(rs, column);
+        }
+    }
+
+    private static final class LongBinding extends ColumnBinding {
+        private final MethodHandle setter;
+
+        LongBinding(int column, EntityMetadata.Property property) {
+            super(column, property);
+            this.setter = property.setterAs(long.class);
+        }
+
+        @Override
+        void write(ResultSet rs, Object entity) throws Throwable {
+            setter.invokeExact(entity, rs.getLong(column));
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getLong(column);
+        }
+    }
+
+    private static final class IntBinding extends ColumnBinding {
+        private final MethodHandle setter;
+
+        IntBinding(int column, EntityMetadata.Property property) {
+            super(column, property);
+            this.setter = property.setterAs(int.class);
+        }
+
+        @Override
+        void write(ResultSet rs, Object entity) throws Throwable {
+            setter.invokeExact(entity, rs.getInt(column));
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getInt(column);
+        }
+    }
+
+    private static final class DoubleBinding extends ColumnBinding {
+        private final MethodHandle setter;
+
+        DoubleBinding(int column, EntityMetadata.Property property) {
+            super(column, property);
+            this.setter = property.setterAs(double.class);
+        }
+
+        @Override
+        void write(ResultSet rs, Object entity) throws Throwable {
+            setter.invokeExact(entity, rs.getDouble(column));
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getDouble(column);
+        }
+    }
+
+    private static final class BooleanBinding extends ColumnBinding {
+        private final MethodHandle setter;
+
+        BooleanBinding(int column, EntityMetadata.Property property) {
+            super(column, property);
+            this.setter = property.setterAs(boolean.class);
+        }
+
+        @Override
+        void write(ResultSet rs, Object entity) throws Throwable {
+            setter.invokeExact(entity, rs.getBoolean(column));
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getBoolean(column);
+        }
+    }
 }
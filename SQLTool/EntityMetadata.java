@@ -0,0 +1,444 @@
+package SQLTool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 实体元数据: 每个实体类只解析一次反射信息, 之后各 DMLTool 方法只做一次 map 查找
+// 实体有注解处理器生成的 EntityAccessor 时直接使用它访问字段和构造器, 不再反射
+public final class EntityMetadata {
+    private static final Map<Class<?>, EntityMetadata> REGISTRY = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<?> entityClass;
+    private final String simpleTableName;
+    // @Table 指定的表名, 不加前缀
+    private final String explicitTableName;
+    private final EntityAccessor<Object> accessor;
+    private final Property idProperty;
+    private final List<Property> properties;
+    private final List<String> fieldNames;
+    private final List<String> columnNames;
+    private final Map<String, Property> propertyIndex;
+    private final String columnList;
+    private final String placeholders;
+    // 无参构造: ()Object
+    private final MethodHandle noArgConstructor;
+    // 全参构造(记录类或参数与字段一一对应的构造器): (Object[])Object
+    private final MethodHandle allArgsConstructor;
+    private volatile Sql sql;
+    // 部分列更新的 set 子句, 按列集合缓存
+    private final Map<BitSet, String> partialUpdateSets = new ConcurrentHashMap<>();
+    // 按字段声明顺序的类型处理器, 注册表变化后重新解析
+    private final TypeHandlers.Resolved handlers;
+
+    @SuppressWarnings("unchecked")
+    private EntityMetadata(Class<?> entityClass) {
+        this.entityClass = entityClass;
+        this.simpleTableName = entityClass.getSimpleName().toLowerCase();
+        this.accessor = (EntityAccessor<Object>) EntityAccessors.find(entityClass);
+
+        List<Property> props = new ArrayList<>();
+        Map<String, Property> index = new HashMap<>();
+        Property id = null;
+        if (accessor != null) {
+            String[] names = accessor.fieldNames();
+            for (int i = 0; i < names.length; i++) {
+                props.add(new Property(accessor, i));
+            }
+            id = accessor.idIndex() >= 0 ? props.get(accessor.idIndex()) : null;
+            this.explicitTableName = accessor.tableName();
+        } else {
+            for (Field field : entityClass.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                Property property = new Property(field, props.size());
+                props.add(property);
+                if (field.isAnnotationPresent(Id.class)) {
+                    id = property;
+                }
+            }
+            Table table = entityClass.getAnnotation(Table.class);
+            this.explicitTableName = table == null || table.name().isEmpty() ? null : table.name();
+        }
+        for (Property property : props) {
+            index.put(property.getName(), property);
+            index.putIfAbsent(property.getColumn(), property);
+        }
+        if (id == null) {
+            id = index.get("id");
+        }
+        this.idProperty = id;
+        this.properties = Collections.unmodifiableList(props);
+        this.fieldNames = props.stream().map(Property::getName).toList();
+        this.columnNames = props.stream().map(Property::getColumn).toList();
+        this.propertyIndex = index;
+        this.columnList = String.join(", ", columnNames);
+        this.placeholders = props.isEmpty() ? "" : "?, ".repeat(props.size() - 1) + "?";
+        this.handlers = new TypeHandlers.Resolved(props.stream().map(Property::getType).toArray(Class<?>[]::new));
+
+        if (accessor != null) {
+            this.allArgsConstructor = null;
+            this.noArgConstructor = null;
+            return;
+        }
+        Constructor<?> allArgs = findAllArgsConstructor(entityClass, props);
+        this.allArgsConstructor = allArgs == null ? null : unreflectConstructor(allArgs)
+                .asSpreader(Object[].class, props.size())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        Constructor<?> noArg = entityClass.isRecord() ? null : findNoArgConstructor(entityClass);
+        this.noArgConstructor = noArg == null ? null : unreflectConstructor(noArg)
+                .asType(MethodType.methodType(Object.class));
+    }
+
+    private static Constructor<?> findNoArgConstructor(Class<?> entityClass) {
+        try {
+            return entityClass.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    // 记录类取规范构造器, 普通类取参数类型与字段声明顺序一致的构造器
+    private static Constructor<?> findAllArgsConstructor(Class<?> entityClass, List<Property> props) {
+        Class<?>[] types;
+        if (entityClass.isRecord()) {
+            types = Arrays.stream(entityClass.getRecordComponents())
+                    .map(RecordComponent::getType)
+                    .toArray(Class<?>[]::new);
+        } else {
+            types = props.stream().map(Property::getType).toArray(Class<?>[]::new);
+        }
+        try {
+            return entityClass.getDeclaredConstructor(types);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflectConstructor(Constructor<?> constructor) {
+        try {
+            constructor.setAccessible(true);
+            return LOOKUP.unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new JDBCException("无法访问构造器: " + constructor, e);
+        }
+    }
+
+    public static EntityMetadata of(Class<?> entityClass) {
+        return REGISTRY.computeIfAbsent(entityClass, EntityMetadata::new);
+    }
+
+    // 是否只能通过全参构造器创建实例(记录类或没有无参构造器)
+    public boolean isConstructorBased() {
+        return accessor != null ? accessor.constructorBased() : noArgConstructor == null;
+    }
+
+    // 生成的访问器, 没有时返回 null
+    public EntityAccessor<Object> getAccessor() {
+        return accessor;
+    }
+
+    // @Id 标注的字段或名为 id 的字段, 都没有时返回 null
+    public Property getIdProperty() {
+        return idProperty;
+    }
+
+    public Object newInstance() {
+        if (accessor != null) {
+            return accessor.newInstance();
+        }
+        if (noArgConstructor == null) {
+            throw new JDBCException("实体没有无参构造器: " + entityClass.getName());
+        }
+        try {
+            return (Object) noArgConstructor.invokeExact();
+        } catch (Throwable e) {
+            throw new JDBCException("实体实例化失败: " + entityClass.getName(), e);
+        }
+    }
+
+    // 参数按字段声明顺序排列
+    public Object newInstance(Object[] args) {
+        if (accessor != null) {
+            return accessor.newInstance(args);
+        }
+        if (allArgsConstructor == null) {
+            throw new JDBCException("实体没有与字段对应的构造器: " + entityClass.getName());
+        }
+        try {
+            return (Object) allArgsConstructor.invokeExact(args);
+        } catch (Throwable e) {
+            throw new JDBCException("实体实例化失败: " + entityClass.getName(), e);
+        }
+    }
+
+    // 按字段值浅复制实体(byte[] 复制数组), 不可写的字段保持默认值
+    public Object copyOf(Object entity) {
+        Object[] values = getValues(entity, 0);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof byte[] bytes) {
+                values[i] = bytes.clone();
+            }
+        }
+        if (isConstructorBased()) {
+            return newInstance(values);
+        }
+        Object copy = newInstance();
+        for (Property property : properties) {
+            if (property.isWritable()) {
+                property.set(copy, values[property.getIndex()]);
+            }
+        }
+        return copy;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTableName() {
+        return sql().tableName;
+    }
+
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    // 逗号分隔的列名: a, b, c
+    public String getColumnList() {
+        return columnList;
+    }
+
+    // 与列数相同的占位符: ?, ?, ?
+    public String getPlaceholders() {
+        return placeholders;
+    }
+
+    // select 列 from 表
+    public String getSelectSql() {
+        return sql().select;
+    }
+
+    // insert into 表 (列) values (占位符)
+    public String getInsertSql() {
+        return sql().insert;
+    }
+
+    // 列 = ?, 列 = ?
+    public String getUpdateSetClause() {
+        return sql().updateSet;
+    }
+
+    // 只包含 columns 中字段下标对应的列: 列 = ?, 列 = ?
+    public String getUpdateSetClause(BitSet columns) {
+        String clause = partialUpdateSets.get(columns);
+        if (clause == null) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+                sb.append(sb.isEmpty() ? "" : ", ").append(columnNames.get(i)).append(" = ?");
+            }
+            clause = sb.toString();
+            partialUpdateSets.put((BitSet) columns.clone(), clause);
+        }
+        return clause;
+    }
+
+    // 按字段声明顺序的参数类型处理器, 与 getValues 的顺序一致
+    public TypeHandler<?>[] getTypeHandlers() {
+        return handlers.get();
+    }
+
+    // 按字段名或列名查找属性, 不存在返回 null
+    public Property getProperty(String name) {
+        return propertyIndex.get(name);
+    }
+
+    // 字段名转列名, 非实体字段按驼峰规则转换
+    public String toColumn(String name) {
+        Property property = propertyIndex.get(name);
+        return property != null ? property.getColumn() : ChangeCharTool.toSnakeCase(name);
+    }
+
+    // 按声明顺序取出所有字段值, 末尾预留 extraSlots 个空位
+    public Object[] getValues(Object entity, int extraSlots) {
+        Object[] values = new Object[properties.size() + extraSlots];
+        for (int i = 0; i < properties.size(); i++) {
+            values[i] = properties.get(i).get(entity);
+        }
+        return values;
+    }
+
+    // 表名依赖全局前缀, 前缀变化时重新生成
+    private Sql sql() {
+        String prefix = DBConnectionTool.getPrefix();
+        Sql current = sql;
+        if (current == null || !current.prefix.equals(prefix)) {
+            current = new Sql(prefix);
+            sql = current;
+        }
+        return current;
+    }
+
+    private final class Sql {
+        final String prefix;
+        final String tableName;
+        final String select;
+        final String insert;
+        final String updateSet;
+
+        Sql(String prefix) {
+            this.prefix = prefix;
+            this.tableName = explicitTableName != null ? explicitTableName : prefix + simpleTableName;
+            if (accessor != null && accessor.selectSql() != null) {
+                this.select = accessor.selectSql();
+                this.insert = accessor.insertSql();
+                this.updateSet = accessor.updateSetClause();
+                return;
+            }
+            this.select = "select " + columnList + " from " + tableName;
+            this.insert = "insert into " + tableName + " (" + columnList + ") values (" + placeholders + ")";
+            this.updateSet = String.join(" = ?, ", columnNames) + " = ?";
+        }
+    }
+
+    // 实体字段（通过 MethodHandle 或生成的访问器读写）
+    public static final class Property {
+        private final Field field;
+        private final String name;
+        private final String column;
+        private final int index;
+        private final Class<?> type;
+        private final EntityAccessor<Object> accessor;
+        // (Object)Object
+        private final MethodHandle getter;
+        // 字段原始类型的写入句柄, final 字段(如记录类)为 null
+        private final MethodHandle setter;
+        // (Object,Object)void
+        private final MethodHandle genericSetter;
+
+        Property(EntityAccessor<Object> accessor, int index) {
+            this.field = null;
+            this.name = accessor.fieldNames()[index];
+            this.column = accessor.columnNames()[index];
+            this.index = index;
+            this.type = accessor.fieldTypes()[index];
+            this.accessor = accessor;
+            this.getter = null;
+            this.setter = null;
+            this.genericSetter = null;
+        }
+
+        Property(Field field, int index) {
+            field.setAccessible(true);
+            this.field = field;
+            this.name = field.getName();
+            Column annotation = field.getAnnotation(Column.class);
+            this.column = annotation != null ? annotation.name() : ChangeCharTool.toSnakeCase(name);
+            this.index = index;
+            this.type = field.getType();
+            this.accessor = null;
+            try {
+                this.getter = LOOKUP.unreflectGetter(field)
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new JDBCException("无法访问字段: " + name, e);
+            }
+            MethodHandle rawSetter;
+            try {
+                rawSetter = LOOKUP.unreflectSetter(field);
+            } catch (IllegalAccessException e) {
+                rawSetter = null;
+            }
+            this.setter = rawSetter;
+            this.genericSetter = rawSetter == null ? null
+                    : rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        // 字段的泛型类型, 使用生成的访问器时只有原始类型
+        public Type getGenericType() {
+            return field != null ? field.getGenericType() : type;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        // 使用生成的访问器时为 null
+        public Field getField() {
+            return field;
+        }
+
+        public boolean isWritable() {
+            return accessor != null ? accessor.isWritable(index) : setter != null;
+        }
+
+        // 按指定类型适配的写入句柄, 用于基本类型免装箱写入
+        public MethodHandle setterAs(Class<?> valueType) {
+            if (setter == null) {
+                throw new JDBCException("字段不可写: " + name);
+            }
+            return setter.asType(MethodType.methodType(void.class, Object.class, valueType));
+        }
+
+        public Object get(Object entity) {
+            if (accessor != null) {
+                return accessor.get(entity, index);
+            }
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw new JDBCException("无法访问字段: " + name, e);
+            }
+        }
+
+        public void set(Object entity, Object value) {
+            if (accessor != null) {
+                accessor.set(entity, index, value);
+                return;
+            }
+            if (genericSetter == null) {
+                throw new JDBCException("字段不可写: " + name);
+            }
+            try {
+                genericSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw new JDBCException("无法写入字段: " + name, e);
+            }
+        }
+    }
+}
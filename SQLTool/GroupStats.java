@@ -0,0 +1,65 @@
+package SQLTool;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+// 分组聚合结果: 分组值及该组的行数、非 NULL 值个数、合计、最小值和最大值
+public final class GroupStats<K, V> {
+    private final K key;
+    private final long count;
+    private final long valueCount;
+    private final BigDecimal sum;
+    private final V min;
+    private final V max;
+
+    GroupStats(K key, long count, long valueCount, BigDecimal sum, V min, V max) {
+        this.key = key;
+        this.count = count;
+        this.valueCount = valueCount;
+        this.sum = sum == null ? BigDecimal.ZERO : sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    // 该组行数, 包括值为 NULL 的行
+    public long getCount() {
+        return count;
+    }
+
+    // 值不为 NULL 的行数
+    public long getValueCount() {
+        return valueCount;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    public V getMin() {
+        return min;
+    }
+
+    public V getMax() {
+        return max;
+    }
+
+    // 非 NULL 值的平均值, 没有值时为 NaN
+    public double getAverage() {
+        return valueCount == 0 ? Double.NaN : sum.divide(BigDecimal.valueOf(valueCount), MathContext.DECIMAL64).doubleValue();
+    }
+
+    // 合并不同分片上同一分组的结果
+    GroupStats<K, V> merge(GroupStats<K, V> other) {
+        return new GroupStats<>(key, count + other.count, valueCount + other.valueCount, sum.add(other.sum),
+                DMLTool.least(min, other.min), DMLTool.greatest(max, other.max));
+    }
+
+    @Override
+    public String toString() {
+        return key + "[count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max + "]";
+    }
+}
@@ -0,0 +1,34 @@
+package SQLTool;
+
+import java.util.List;
+
+// 键集分页结果: 当前页数据及获取下一页的令牌
+public final class KeysetPage<T> {
+    private final List<T> items;
+    private final Object[] lastValues;
+    private final String nextToken;
+
+    KeysetPage(List<T> items, Object[] lastValues, String nextToken) {
+        this.items = items;
+        this.lastValues = lastValues;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    // 本页最后一行的排序字段值, 空页时为 null
+    public Object[] getLastValues() {
+        return lastValues == null ? null : lastValues.clone();
+    }
+
+    // 下一页令牌, 没有更多数据时为 null
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,134 @@
+package SQLTool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+// 键集分页令牌编解码: 排序签名 + 按类型编码的最后一行排序值(NULL 单独标记), Base64URL 输出
+final class KeysetToken {
+    private KeysetToken() {}
+
+    private static final byte VERSION = 1;
+
+    static String encode(int signature, Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(signature);
+            out.writeByte(values.length);
+            for (Object value : values) {
+                writeValue(out, value);
+            }
+        } catch (IOException e) {
+            throw new JDBCException("分页令牌生成失败", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    static Object[] decode(String token, int signature, int count) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION || in.readInt() != signature || in.readByte() != count) {
+                throw new JDBCException("分页令牌与当前排序条件不匹配");
+            }
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = readValue(in);
+            }
+            return values;
+        } catch (IOException | IllegalArgumentException | DateTimeException e) {
+            throw new JDBCException("分页令牌无效", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte('0');
+        } else if (value instanceof Long v) {
+            out.writeByte('J');
+            out.writeLong(v);
+        } else if (value instanceof Integer v) {
+            out.writeByte('I');
+            out.writeInt(v);
+        } else if (value instanceof Short v) {
+            out.writeByte('S');
+            out.writeShort(v);
+        } else if (value instanceof Byte v) {
+            out.writeByte('B');
+            out.writeByte(v);
+        } else if (value instanceof Double v) {
+            out.writeByte('D');
+            out.writeDouble(v);
+        } else if (value instanceof Float v) {
+            out.writeByte('F');
+            out.writeFloat(v);
+        } else if (value instanceof Boolean v) {
+            out.writeByte('Z');
+            out.writeBoolean(v);
+        } else if (value instanceof String v) {
+            out.writeByte('T');
+            out.writeUTF(v);
+        } else if (value instanceof BigDecimal v) {
+            out.writeByte('N');
+            out.writeUTF(v.toString());
+        } else if (value instanceof LocalDate v) {
+            out.writeByte('d');
+            out.writeLong(v.toEpochDay());
+        } else if (value instanceof LocalDateTime v) {
+            out.writeByte('t');
+            out.writeUTF(v.toString());
+        } else if (value instanceof OffsetDateTime v) {
+            out.writeByte('o');
+            out.writeUTF(v.toString());
+        } else if (value instanceof Instant v) {
+            out.writeByte('i');
+            out.writeUTF(v.toString());
+        } else if (value instanceof Timestamp v) {
+            out.writeByte('s');
+            out.writeUTF(v.toString());
+        } else if (value instanceof java.sql.Date v) {
+            out.writeByte('q');
+            out.writeLong(v.toLocalDate().toEpochDay());
+        } else if (value instanceof UUID v) {
+            out.writeByte('u');
+            out.writeLong(v.getMostSignificantBits());
+            out.writeLong(v.getLeastSignificantBits());
+        } else {
+            throw new JDBCException("不支持作为分页排序值的类型: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case '0' -> null;
+            case 'J' -> in.readLong();
+            case 'I' -> in.readInt();
+            case 'S' -> in.readShort();
+            case 'B' -> in.readByte();
+            case 'D' -> in.readDouble();
+            case 'F' -> in.readFloat();
+            case 'Z' -> in.readBoolean();
+            case 'T' -> in.readUTF();
+            case 'N' -> new BigDecimal(in.readUTF());
+            case 'd' -> LocalDate.ofEpochDay(in.readLong());
+            case 't' -> LocalDateTime.parse(in.readUTF());
+            case 'o' -> OffsetDateTime.parse(in.readUTF());
+            case 'i' -> Instant.parse(in.readUTF());
+            case 's' -> Timestamp.valueOf(in.readUTF());
+            case 'q' -> java.sql.Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+            case 'u' -> new UUID(in.readLong(), in.readLong());
+            default -> throw new IOException("未知的值类型: " + type);
+        };
+    }
+}
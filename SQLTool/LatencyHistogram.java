@@ -0,0 +1,142 @@
+package SQLTool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// 延迟直方图: 对数线性分桶(每个2的幂区间16个子桶, 相对误差约6%), 取值上限 2^40 微秒(约12天)
+// 平时只用一个计数数组, 出现写竞争后才按线程分条带, 很少执行的语句不占用条带内存
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+    private static final int MAX_STRIPES = 8;
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray base = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicReference<AtomicLongArray[]> stripes = new AtomicReference<>();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private static int stripeCount() {
+        int n = Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors());
+        return Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+    }
+
+    // 记录一次耗时(微秒), 超过上限的值计入最后一个桶
+    void record(long micros) {
+        long v = Math.min(Math.max(0, micros), MAX_VALUE);
+        int index = bucketIndex(v);
+        AtomicLongArray[] striped = stripes.get();
+        if (striped == null) {
+            long c = base.get(index);
+            if (!base.compareAndSet(index, c, c + 1)) {
+                striped = inflate();
+            }
+        }
+        if (striped != null) {
+            striped[(int) Thread.currentThread().threadId() & (STRIPES - 1)].incrementAndGet(index);
+        }
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    private AtomicLongArray[] inflate() {
+        AtomicLongArray[] created = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            created[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+        return stripes.compareAndSet(null, created) ? created : stripes.get();
+    }
+
+    static int bucketIndex(long v) {
+        if (v < SUB_COUNT) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (v >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    // 桶内取值上界
+    static long bucketUpperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    SqlMetrics.LatencySnapshot snapshot() {
+        long[] merged = new long[BUCKET_COUNT];
+        long total = merge(base, merged);
+        AtomicLongArray[] striped = stripes.get();
+        if (striped != null) {
+            for (AtomicLongArray stripe : striped) {
+                total += merge(stripe, merged);
+            }
+        }
+        long sumValue = sum.sum();
+        long maxValue = max.get();
+        double mean = total == 0 ? 0 : (double) sumValue / total;
+        return new SqlMetrics.LatencySnapshot(total, mean, maxValue,
+                Math.min(percentile(merged, total, 0.50), maxValue),
+                Math.min(percentile(merged, total, 0.99), maxValue),
+                Math.min(percentile(merged, total, 0.999), maxValue));
+    }
+
+    private static long merge(AtomicLongArray counts, long[] merged) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts.get(i);
+            merged[i] += c;
+            total += c;
+        }
+        return total;
+    }
+
+    private static long percentile(long[] buckets, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(buckets.length - 1);
+    }
+
+    void reset() {
+        clear(base);
+        AtomicLongArray[] striped = stripes.get();
+        if (striped != null) {
+            for (AtomicLongArray stripe : striped) {
+                clear(stripe);
+            }
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static void clear(AtomicLongArray counts) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    long count() {
+        return count.sum();
+    }
+}
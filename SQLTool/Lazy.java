@@ -0,0 +1,50 @@
+package SQLTool;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// 延迟加载的值: 投影查询中 Lazy 类型的字段不随结果集读取, 首次调用 get 时单独查询并缓存
+// 加载使用创建时所在的 Database 实例, 可以跨线程访问
+public final class Lazy<V> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private Supplier<V> loader;
+    private volatile boolean loaded;
+    private V value;
+
+    Lazy(Supplier<V> loader) {
+        this.loader = loader;
+    }
+
+    // 已加载的值, 用于手工构造 DTO
+    public static <V> Lazy<V> of(V value) {
+        Lazy<V> lazy = new Lazy<>(null);
+        lazy.value = value;
+        lazy.loaded = true;
+        return lazy;
+    }
+
+    public V get() {
+        if (!loaded) {
+            lock.lock();
+            try {
+                if (!loaded) {
+                    value = loader.get();
+                    loaded = true;
+                    loader = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public String toString() {
+        return loaded ? "Lazy[" + value + "]" : "Lazy[未加载]";
+    }
+}
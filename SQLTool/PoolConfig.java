@@ -0,0 +1,109 @@
+package SQLTool;
+
+// 连接池配置
+public class PoolConfig {
+    private int minSize = 0;
+    private int maxSize = 10;
+    private long maxWaitMillis = 30_000;
+    private long idleTimeoutMillis = 600_000;
+    private long evictionIntervalMillis = 30_000;
+    private int validationTimeoutSeconds = 3;
+    // 归还后此时间内再次借出时跳过校验
+    private long validationIntervalMillis = 500;
+    private boolean fair = true;
+    // 每个连接缓存的 PreparedStatement 数量, 0 表示不缓存
+    private int statementCacheSize = 64;
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public PoolConfig setMinSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("最小连接数不能小于0");
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public PoolConfig setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("最大连接数必须大于0");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public PoolConfig setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public PoolConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public PoolConfig setEvictionIntervalMillis(long evictionIntervalMillis) {
+        if (evictionIntervalMillis <= 0) {
+            throw new IllegalArgumentException("空闲检测间隔必须大于0");
+        }
+        this.evictionIntervalMillis = evictionIntervalMillis;
+        return this;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public PoolConfig setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public PoolConfig setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+        return this;
+    }
+
+    public boolean isFair() {
+        return fair;
+    }
+
+    public PoolConfig setFair(boolean fair) {
+        this.fair = fair;
+        return this;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public PoolConfig setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("语句缓存大小不能小于0");
+        }
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+}
@@ -0,0 +1,197 @@
+package SQLTool;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 投影: 只查询实体表的部分列, 映射到实体本身(其余字段保持默认值)或 DTO/记录类
+// 每种投影形状(实体类 + 字段列表或 DTO 类)只解析一次, 生成的 SQL 按表名缓存
+final class Projection {
+    private static final Map<List<Object>, Projection> CACHE = new ConcurrentHashMap<>();
+
+    private final EntityMetadata meta;
+    private final Class<?> targetClass;
+    private final String columnList;
+    private final LazyColumn[] lazyColumns;
+    private final String keyColumn;
+    private volatile Sql sql;
+
+    private Projection(EntityMetadata meta, Class<?> targetClass, List<String> columns, List<LazyColumn> lazyColumns) {
+        this.meta = meta;
+        this.targetClass = targetClass;
+        this.lazyColumns = lazyColumns.toArray(new LazyColumn[0]);
+        this.keyColumn = this.lazyColumns.length == 0 ? null : requireKey(meta).getColumn();
+        List<String> selected = new ArrayList<>(columns);
+        if (keyColumn != null && !selected.contains(keyColumn)) {
+            selected.add(keyColumn);
+        }
+        if (selected.isEmpty()) {
+            throw new JDBCException("投影没有匹配的字段: " + targetClass.getSimpleName());
+        }
+        this.columnList = String.join(", ", selected);
+    }
+
+
+//    实体字段子集, 字段名或列名均可
+
+    static Projection ofFields(Class<?> entityClass, String... fields) {
+        List<Object> key = List.of(entityClass, List.of(fields));
+        return CACHE.computeIfAbsent(key, k -> {
+            EntityMetadata meta = EntityMetadata.of(entityClass);
+            List<String> columns = new ArrayList<>(fields.length);
+            for (String field : fields) {
+                EntityMetadata.Property property = meta.getProperty(field);
+                if (property == null) {
+                    throw new JDBCException("字段不存在: " + entityClass.getSimpleName() + "." + field);
+                }
+                if (!columns.contains(property.getColumn())) {
+                    columns.add(property.getColumn());
+                }
+            }
+            return new Projection(meta, entityClass, columns, List.of());
+        });
+    }
+
+
+//    DTO/记录类: 按字段名匹配实体字段, 未匹配的字段忽略; Lazy 类型的字段延迟加载
+//    两边 @Column 列名不同时用别名把实体列映射为 DTO 列
+
+    static Projection ofClass(Class<?> entityClass, Class<?> dtoClass) {
+        List<Object> key = List.of(entityClass, dtoClass);
+        return CACHE.computeIfAbsent(key, k -> {
+            EntityMetadata meta = EntityMetadata.of(entityClass);
+            List<String> columns = new ArrayList<>();
+            List<LazyColumn> lazyColumns = new ArrayList<>();
+            for (EntityMetadata.Property target : EntityMetadata.of(dtoClass).getProperties()) {
+                EntityMetadata.Property source = meta.getProperty(target.getName());
+                if (source == null) {
+                    continue;
+                }
+                if (target.getType() == Lazy.class) {
+                    lazyColumns.add(new LazyColumn(target, source.getColumn(),
+                            EntityMapper.readerFor(lazyValueType(target))));
+                } else if (source.getColumn().equals(target.getColumn())) {
+                    columns.add(source.getColumn());
+                } else {
+                    columns.add(source.getColumn() + " as " + target.getColumn());
+                }
+            }
+            return new Projection(meta, dtoClass, columns, lazyColumns);
+        });
+    }
+
+    private static EntityMetadata.Property requireKey(EntityMetadata meta) {
+        EntityMetadata.Property key = meta.getIdProperty();
+        if (key == null) {
+            throw new JDBCException("延迟加载需要主键字段(@Id 或 id): " + meta.getEntityClass().getSimpleName());
+        }
+        return key;
+    }
+
+    // Lazy<V> 的 V, 无法解析(如使用生成的访问器)时按 Object 读取
+    private static Class<?> lazyValueType(EntityMetadata.Property property) {
+        Type type = property.getGenericType();
+        if (type instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] instanceof Class<?> valueType) {
+            return valueType;
+        }
+        return Object.class;
+    }
+
+    EntityMetadata getMetadata() {
+        return meta;
+    }
+
+    boolean hasLazyColumns() {
+        return lazyColumns.length > 0;
+    }
+
+    // select 投影列 from 表
+    String getSelectSql() {
+        return sql().select;
+    }
+
+    <R> EntityMapper<R> mapper(Class<R> targetClass) {
+        return new EntityMapper<>(targetClass, this);
+    }
+
+    // 结果集中主键列的下标
+    int keyIndex(ResultSetMetaData rsMeta) throws SQLException {
+        for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+            if (rsMeta.getColumnLabel(i).toLowerCase(Locale.ROOT).equals(keyColumn)) {
+                return i;
+            }
+        }
+        throw new SQLException("结果集中缺少主键列: " + keyColumn);
+    }
+
+
+//    为当前行创建延迟加载值, 按 DTO 字段下标写入 values
+
+    void fillLazy(ResultSet rs, int keyIndex, Object[] values) throws SQLException {
+        Object key = rs.getObject(keyIndex);
+        Database db = Database.current();
+        String[] lazySelects = sql().lazySelects;
+        for (int i = 0; i < lazyColumns.length; i++) {
+            LazyColumn lazy = lazyColumns[i];
+            String lazySql = lazySelects[i];
+            values[lazy.target.getIndex()] = new Lazy<>(() -> db.call(() -> {
+                List<Object> rows = DBConnectionTool.query(lazySql, r -> lazy.reader.read(r, 1), key);
+                return rows.isEmpty() ? null : rows.getFirst();
+            }));
+        }
+    }
+
+    void setLazy(ResultSet rs, int keyIndex, Object target) throws SQLException {
+        Object[] values = new Object[EntityMetadata.of(targetClass).getProperties().size()];
+        fillLazy(rs, keyIndex, values);
+        for (LazyColumn lazy : lazyColumns) {
+            lazy.target.set(target, values[lazy.target.getIndex()]);
+        }
+    }
+
+    // 表名依赖全局前缀, 前缀变化时重新生成
+    private Sql sql() {
+        String tableName = meta.getTableName();
+        Sql current = sql;
+        if (current == null || !current.tableName.equals(tableName)) {
+            current = new Sql(tableName);
+            sql = current;
+        }
+        return current;
+    }
+
+    private final class Sql {
+        final String tableName;
+        final String select;
+        final String[] lazySelects;
+
+        Sql(String tableName) {
+            this.tableName = tableName;
+            this.select = "select " + columnList + " from " + tableName;
+            this.lazySelects = Arrays.stream(lazyColumns)
+                    .map(lazy -> "select " + lazy.column + " from " + tableName + " where " + keyColumn + " = ?")
+                    .toArray(String[]::new);
+        }
+    }
+
+    private static final class LazyColumn {
+        final EntityMetadata.Property target;
+        final String column;
+        final EntityMapper.ValueReader reader;
+
+        LazyColumn(EntityMetadata.Property target, String column, EntityMapper.ValueReader reader) {
+            this.target = target;
+            this.column = column;
+            this.reader = reader;
+        }
+    }
+}
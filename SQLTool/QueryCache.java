@@ -0,0 +1,307 @@
+package SQLTool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// 查询结果缓存: 按 SQL 和参数缓存实体列表, LRU 淘汰并支持过期时间
+// 按实体类开启, DMLTool 写入某张表后自动失效该表的全部缓存(事务中推迟到提交后)
+// 缓存保存结果的副本, 命中时再复制一份返回, 调用方修改(但未保存)的实体不会影响缓存
+public class QueryCache {
+    private QueryCache() {}
+
+    private static final Set<Class<?>> enabledClasses = ConcurrentHashMap.newKeySet();
+    private static final Map<String, TableState> tables = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+    private static int maxEntries = 10_000;
+    private static long ttlMillis = 60_000;
+
+    // 访问顺序的 LinkedHashMap 实现 LRU, 由 lock 保护
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxEntries) {
+                tableState(eldest.getKey().table).keys.remove(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+
+//    全局配置: 最大缓存条数和过期时间(毫秒, <= 0 表示不过期)
+
+    public static void configure(int maxSize, long ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("缓存条数必须大于0");
+        }
+        synchronized (lock) {
+            maxEntries = maxSize;
+            ttlMillis = ttl;
+        }
+    }
+
+    public static void enable(Class<?> entityClass) {
+        enabledClasses.add(entityClass);
+    }
+
+    public static void disable(Class<?> entityClass) {
+        enabledClasses.remove(entityClass);
+        invalidate(entityClass);
+    }
+
+    public static boolean isEnabled(Class<?> entityClass) {
+        return !enabledClasses.isEmpty() && enabledClasses.contains(entityClass);
+    }
+
+
+//    读取缓存, 未命中时执行 loader 并在表未被写入的情况下放入缓存
+
+    static <T> List<T> get(String table, String sql, Object[] params, Supplier<List<T>> loader) {
+        Key key = new Key(table, sql, params);
+        TableState state = tableState(table);
+        long version;
+        List<?> cached = null;
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired() && entry.version == state.version) {
+                state.hits.increment();
+                cached = entry.value;
+            }
+            else if (entry != null) {
+                entries.remove(key);
+                state.keys.remove(key);
+            }
+            version = state.version;
+        }
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            List<T> copies = (List<T>) copyRows(cached, true);
+            return copies;
+        }
+        state.misses.increment();
+
+        List<T> result = loader.get();
+        List<?> stored = Collections.unmodifiableList(copyRows(result, false));
+        synchronized (lock) {
+            // 查询期间表被写入则不缓存, 避免放入旧数据
+            if (state.version == version) {
+                long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+                entries.put(key, new Entry(stored, version, expiresAt));
+                state.keys.add(key);
+            }
+        }
+        return result;
+    }
+
+    // 复制结果行: 不可变的值原样保留, Object[] 复制数组, 实体按字段复制
+    // 返回给调用方的实体副本在开启变更跟踪时重新建立快照, 与从数据库加载的实体一致
+    private static List<Object> copyRows(List<?> rows, boolean track) {
+        List<Object> copies = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            copies.add(copyRow(row, track));
+        }
+        return copies;
+    }
+
+    private static Object copyRow(Object row, boolean track) {
+        if (row == null || row instanceof Record || row instanceof Enum<?> || row instanceof GroupStats<?, ?>) {
+            return row;
+        }
+        if (row instanceof Object[] values) {
+            return values.clone();
+        }
+        if (row instanceof byte[] bytes) {
+            return bytes.clone();
+        }
+        if (row instanceof Date date) {
+            return date.clone();
+        }
+        // 其余 JDK 类型(数值、字符串、java.time 等)不可变
+        if (row.getClass().getName().startsWith("java.")) {
+            return row;
+        }
+        EntityMetadata meta = EntityMetadata.of(row.getClass());
+        Object copy = meta.copyOf(row);
+        if (track && ChangeTracker.isEnabled(row.getClass())) {
+            ChangeTracker.track(copy, meta);
+        }
+        return copy;
+    }
+
+
+//    失效某张表的全部缓存
+
+    public static void invalidate(String table) {
+        TableState state = tables.get(table);
+        if (state == null) {
+            return;
+        }
+        synchronized (lock) {
+            state.version++;
+            for (Key key : state.keys) {
+                entries.remove(key);
+            }
+            state.keys.clear();
+        }
+    }
+
+    // 失效当前 Database 实例上该实体表的缓存
+    public static void invalidate(Class<?> entityClass) {
+        invalidate(cacheTable(EntityMetadata.of(entityClass).getTableName()));
+    }
+
+    public static void clear() {
+        synchronized (lock) {
+            for (TableState state : tables.values()) {
+                state.version++;
+                state.keys.clear();
+            }
+            entries.clear();
+        }
+    }
+
+
+//    清除已过期的条目
+
+    public static void evictExpired() {
+        synchronized (lock) {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Entry> e = it.next();
+                if (e.getValue().isExpired()) {
+                    tableState(e.getKey().table).keys.remove(e.getKey());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static Stats getStats(Class<?> entityClass) {
+        return getStats(cacheTable(EntityMetadata.of(entityClass).getTableName()));
+    }
+
+    // 缓存中的表名: 非默认实例加上实例名, 不同库(分片)的同名表互不共用缓存
+    static String cacheTable(String tableName) {
+        Database db = Database.current();
+        return db == Database.getDefault() ? tableName : db.getName() + "." + tableName;
+    }
+
+    public static Stats getStats(String table) {
+        TableState state = tableState(table);
+        int size;
+        synchronized (lock) {
+            size = state.keys.size();
+        }
+        return new Stats(state.hits.sum(), state.misses.sum(), size);
+    }
+
+    public static Map<String, Stats> getAllStats() {
+        Map<String, Stats> result = new HashMap<>();
+        for (String table : tables.keySet()) {
+            result.put(table, getStats(table));
+        }
+        return result;
+    }
+
+    private static TableState tableState(String table) {
+        return tables.computeIfAbsent(table, t -> new TableState());
+    }
+
+    // 缓存命中统计
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final int size;
+
+        Stats(long hits, long misses, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d size=%d hitRatio=%.3f", hits, misses, size, getHitRatio());
+        }
+    }
+
+    // 每张表的版本号和缓存键, version 与 keys 由 lock 保护
+    private static final class TableState {
+        long version;
+        final Set<Key> keys = new HashSet<>();
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+
+    private static final class Entry {
+        final List<?> value;
+        final long version;
+        final long expiresAt;
+
+        Entry(List<?> value, long version, long expiresAt) {
+            this.value = value;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Key {
+        final String table;
+        final String sql;
+        final Object[] params;
+        final int hash;
+
+        Key(String table, String sql, Object[] params) {
+            this.table = table;
+            this.sql = sql;
+            this.params = params == null ? new Object[0] : params.clone();
+            this.hash = 31 * (31 * table.hashCode() + sql.hashCode()) + Arrays.hashCode(this.params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return hash == other.hash && table.equals(other.table) && sql.equals(other.sql)
+                    && Arrays.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package SQLTool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 只读副本路由: 每个副本一个连接池, 按负载均衡策略选择健康的副本
+// 借连接失败的副本立即移出轮询, 后台健康检查通过后恢复
+public class ReplicaRouter {
+    public enum LoadBalance {
+        // 依次轮询
+        ROUND_ROBIN,
+        // 选择借出加等待连接数最少的副本
+        LEAST_BUSY
+    }
+
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthCheck;
+    private volatile LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+    private volatile boolean closed;
+
+    ReplicaRouter(long healthCheckIntervalMillis) {
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SQLTool-replica-health-check");
+            t.setDaemon(true);
+            return t;
+        });
+        healthCheck.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis, healthCheckIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    void add(String url, String user, String pass, PoolConfig config) {
+        replicas.add(new Replica(url, new ConnectionPool(url, user, pass, config)));
+    }
+
+
+//    从健康的副本借出连接, 全部不可用时返回 null 由调用方回退到主库
+
+    Connection borrow() {
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                candidates.add(replica);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Replica replica = choose(candidates);
+            try {
+                return replica.pool.borrow();
+            } catch (SQLTimeoutException e) {
+                // 副本繁忙不算故障, 换下一个
+                candidates.remove(replica);
+            } catch (SQLException | RuntimeException e) {
+                markUnhealthy(replica, e);
+                candidates.remove(replica);
+            }
+        }
+        return null;
+    }
+
+    private Replica choose(List<Replica> candidates) {
+        if (loadBalance == LoadBalance.LEAST_BUSY) {
+            Replica best = candidates.getFirst();
+            int bestLoad = Integer.MAX_VALUE;
+            for (Replica replica : candidates) {
+                int load = replica.pool.getActiveCount() + replica.pool.getWaitingCount();
+                if (load < bestLoad) {
+                    best = replica;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    // 连接所属的副本连接池, 不属于任何副本时返回 null
+    ConnectionPool ownerOf(Connection conn) {
+        for (Replica replica : replicas) {
+            if (replica.pool.owns(conn)) {
+                return replica.pool;
+            }
+        }
+        return null;
+    }
+
+    private void markUnhealthy(Replica replica, Exception e) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            ColorLogger.logError("副本不可用, 移出轮询: " + replica.url, e);
+        }
+    }
+
+
+//    后台健康检查: 借出连接并校验, 恢复或移除副本
+
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            if (closed) {
+                return;
+            }
+            Connection conn = null;
+            try {
+                conn = replica.pool.borrow();
+                int timeout = replica.pool.getConfig().getValidationTimeoutSeconds();
+                if (!conn.isValid(timeout)) {
+                    throw new SQLException("连接校验失败");
+                }
+                if (!replica.healthy) {
+                    replica.healthy = true;
+                    ColorLogger.logSQL("REPLICA RECOVERED: " + replica.url);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (conn != null) {
+                    replica.pool.invalidate(conn);
+                    conn = null;
+                }
+                markUnhealthy(replica, e);
+            } finally {
+                if (conn != null) {
+                    replica.pool.release(conn);
+                }
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        healthCheck.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+        replicas.clear();
+    }
+
+    public LoadBalance getLoadBalance() {
+        return loadBalance;
+    }
+
+    public void setLoadBalance(LoadBalance loadBalance) {
+        this.loadBalance = loadBalance;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public int getHealthyCount() {
+        int count = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String getUrl(int index) {
+        return replicas.get(index).url;
+    }
+
+    public boolean isHealthy(int index) {
+        return replicas.get(index).healthy;
+    }
+
+    public ConnectionPool getPool(int index) {
+        return replicas.get(index).pool;
+    }
+
+    private static final class Replica {
+        final String url;
+        final ConnectionPool pool;
+        volatile boolean healthy = true;
+
+        Replica(String url, ConnectionPool pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+}
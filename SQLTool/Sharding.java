@@ -0,0 +1,241 @@
+package SQLTool;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// 实体分片: 按分片键字段值的哈希把实体路由到某个 Database 实例
+// 注册后 DMLTool 的增删改查按分片键路由到单个分片, 条件不含分片键时在所有分片上并行执行后合并
+// 线程已通过 Database.call 显式绑定实例时不再路由; 分片操作不参与调用线程上已开启的事务,
+// 在该事务中执行分片写入会抛出异常, 分片内的事务请使用 shard.doInTransaction
+public class Sharding {
+    private Sharding() {}
+
+    private static final Map<Class<?>, Spec> specs = new ConcurrentHashMap<>();
+
+    public static void register(Class<?> entityClass, String shardKey, List<Database> shards) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("分片列表为空");
+        }
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        EntityMetadata.Property key = meta.getProperty(shardKey);
+        if (key == null) {
+            throw new JDBCException("分片键字段不存在: " + entityClass.getSimpleName() + "." + shardKey);
+        }
+        specs.put(entityClass, new Spec(key, List.copyOf(shards)));
+    }
+
+    public static void unregister(Class<?> entityClass) {
+        specs.remove(entityClass);
+    }
+
+    public static boolean isSharded(Class<?> entityClass) {
+        return specs.containsKey(entityClass);
+    }
+
+    public static List<Database> getShards(Class<?> entityClass) {
+        Spec spec = specs.get(entityClass);
+        return spec == null ? List.of() : spec.shards;
+    }
+
+    // 分片键值所在的分片
+    public static Database shardFor(Class<?> entityClass, Object keyValue) {
+        Spec spec = specs.get(entityClass);
+        if (spec == null) {
+            throw new JDBCException("实体未分片: " + entityClass.getSimpleName());
+        }
+        return spec.shardOf(keyValue);
+    }
+
+    // 需要路由时返回分片规则; 未分片或线程已绑定实例时返回 null
+    static Spec route(Class<?> entityClass) {
+        if (specs.isEmpty() || Database.isBound()) {
+            return null;
+        }
+        return specs.get(entityClass);
+    }
+
+    // 写入时的路由: 调用线程在当前实例上开启了事务时拒绝执行, 否则分片上的写入会自动提交, 无法随事务回滚
+    static Spec routeWrite(Class<?> entityClass) {
+        Spec spec = route(entityClass);
+        if (spec != null && DBConnectionTool.isInTransaction()) {
+            throw new JDBCException("分片实体的写入不能在 " + Database.current().getName()
+                    + " 的事务中执行, 请使用分片的 doInTransaction: " + entityClass.getSimpleName());
+        }
+        return spec;
+    }
+
+
+//    在各分片上并行执行, 结果按分片顺序返回
+
+    static <R> List<R> scatter(List<Database> shards, Supplier<R> action) {
+        if (shards.size() == 1) {
+            return List.of(shards.getFirst().call(action));
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (Database shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> shard.call(action), AsyncDBTool.getExecutor()));
+        }
+        List<R> results = new ArrayList<>(shards.size());
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+
+//    按行所在分片分组执行, 每组在自己的分片上运行 action, 返回值按原始行顺序排列
+
+    static <T> int[] perRow(Spec spec, List<T> rows, Function<List<T>, int[]> action) {
+        Map<Database, List<Integer>> groups = spec.groupRows(rows);
+        int[] result = new int[rows.size()];
+        for (Map.Entry<Database, List<Integer>> group : groups.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            List<T> part = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                part.add(rows.get(index));
+            }
+            int[] counts = group.getKey().call(() -> action.apply(part));
+            for (int i = 0; i < counts.length; i++) {
+                result[indexes.get(i)] = counts[i];
+            }
+        }
+        return result;
+    }
+
+    // 各分片已按 comparator 排好序的结果归并为一个有序列表
+    static <T> List<T> mergeSorted(List<List<T>> parts, Comparator<? super T> comparator) {
+        int total = 0;
+        for (List<T> part : parts) {
+            total += part.size();
+        }
+        List<T> merged = new ArrayList<>(total);
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> comparator.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1])));
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> part = parts.get(head[0]);
+            merged.add(part.get(head[1]));
+            if (++head[1] < part.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    static final class Spec {
+        final EntityMetadata.Property key;
+        final List<Database> shards;
+
+        // 分片键字段的包装类型, 键值哈希前先转换为该类型
+        final Class<?> keyType;
+
+        Spec(EntityMetadata.Property key, List<Database> shards) {
+            this.key = key;
+            this.shards = shards;
+            this.keyType = Criteria.boxed(key.getType());
+            if (!hasStableHash(keyType)) {
+                throw new JDBCException("分片键类型的哈希值在不同 JVM 之间不稳定: " + key.getName()
+                        + " (" + keyType.getSimpleName() + ")");
+            }
+        }
+
+        // 分片数据库默认排序中 NULL 是否为最小值, 用于归并各分片的有序结果; 无法识别的数据库按最小值处理
+        boolean nullsSortLow() {
+            Dialect dialect = shards.getFirst().getDialect();
+            return dialect == Dialect.OTHER || dialect.nullsSortLow();
+        }
+
+        boolean isKey(EntityMetadata meta, String column) {
+            return meta.getProperty(column) == key;
+        }
+
+        // 键值先转换为分片键字段的类型(Integer -5 与 Long -5 落在同一分片), 枚举按名称哈希
+        Database shardOf(Object keyValue) {
+            if (keyValue == null) {
+                throw new JDBCException("分片键值为空: " + key.getName());
+            }
+            Object value = normalize(keyValue);
+            int h = value instanceof Enum<?> e ? e.name().hashCode() : value.hashCode();
+            return shards.get(Math.floorMod(h ^ (h >>> 16), shards.size()));
+        }
+
+        private Object normalize(Object value) {
+            if (keyType.isInstance(value)) {
+                return value instanceof BigDecimal d ? d.stripTrailingZeros() : value;
+            }
+            if (value instanceof Number n) {
+                if (keyType == Long.class) return n.longValue();
+                if (keyType == Integer.class) return n.intValue();
+                if (keyType == Short.class) return n.shortValue();
+                if (keyType == Byte.class) return n.byteValue();
+                if (keyType == BigInteger.class) {
+                    return n instanceof BigDecimal d ? d.toBigInteger() : BigInteger.valueOf(n.longValue());
+                }
+                if (keyType == BigDecimal.class) {
+                    return new BigDecimal(n.toString()).stripTrailingZeros();
+                }
+            }
+            // 枚举键也可以按名称查询
+            if (keyType.isEnum() && value instanceof String name) {
+                return name;
+            }
+            throw new JDBCException("分片键值类型不匹配: " + key.getName() + " 需要 " + keyType.getSimpleName()
+                    + ", 实际为 " + value.getClass().getSimpleName());
+        }
+
+        // hashCode 只由值决定的类型; 枚举按名称哈希, 也视为稳定
+        private static boolean hasStableHash(Class<?> type) {
+            return type.isEnum() || type == String.class || type == Long.class || type == Integer.class
+                    || type == Short.class || type == Byte.class || type == BigInteger.class || type == BigDecimal.class
+                    || type == Boolean.class || type == Character.class || type == UUID.class
+                    || type == LocalDate.class || type == LocalDateTime.class || type == Instant.class;
+        }
+
+        Database shardOfEntity(Object entity) {
+            return shardOf(key.get(entity));
+        }
+
+        <T> Map<Database, List<Integer>> groupRows(List<T> rows) {
+            Map<Database, List<Integer>> groups = new LinkedHashMap<>();
+            for (int i = 0; i < rows.size(); i++) {
+                groups.computeIfAbsent(shardOfEntity(rows.get(i)), db -> new ArrayList<>()).add(i);
+            }
+            return groups;
+        }
+
+        <V> Map<Database, List<V>> groupValues(Iterable<V> values) {
+            Map<Database, List<V>> groups = new LinkedHashMap<>();
+            for (V value : values) {
+                groups.computeIfAbsent(shardOf(value), db -> new ArrayList<>()).add(value);
+            }
+            return groups;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package SQLTool;
+
+// 排序字段: 字段名(驼峰或列名)及升降序
+public final class SortKey {
+    private final String field;
+    private final boolean ascending;
+
+    private SortKey(String field, boolean ascending) {
+        this.field = field;
+        this.ascending = ascending;
+    }
+
+    public static SortKey asc(String field) {
+        return new SortKey(field, true);
+    }
+
+    public static SortKey desc(String field) {
+        return new SortKey(field, false);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    @Override
+    public String toString() {
+        return field + (ascending ? " asc" : " desc");
+    }
+}
@@ -0,0 +1,454 @@
+package SQLTool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+// 可落盘的结果列表: 行数或估算字节数未超过阈值时保存在堆内, 超过后把全部行按 Codec 序列化写入临时文件
+// 临时文件按段内存映射(每段 SEGMENT_SIZE, 行不跨段), 读取时按行偏移量随机访问并惰性反序列化
+// 落盘后每次 get 都返回新反序列化的对象; 写入需在单线程中完成, 写完后可并发读取
+// 使用完毕必须 close, 关闭时删除临时文件
+public final class SpillList<T> extends AbstractList<T> implements RandomAccess, AutoCloseable {
+    private static final int SEGMENT_BITS = 26;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    // 堆内阶段每隔多少行序列化一行用于估算字节数
+    private static final int SAMPLE_INTERVAL = 32;
+
+    // 行的二进制编码
+    public interface Codec<T> {
+        void write(DataOutput out, T row) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    private final Codec<T> codec;
+    private final int maxRows;
+    private final long maxBytes;
+    private final Scratch scratch = new Scratch();
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private List<T> heap = new ArrayList<>();
+    private long sampledRows;
+    private long sampledBytes;
+
+    private Path file;
+    private FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long[] offsets;
+    private long writePosition;
+    private int size;
+    private volatile boolean closed;
+
+    public SpillList(Codec<T> codec, int maxRows, long maxBytes) {
+        if (codec == null) {
+            throw new IllegalArgumentException("编码器为空");
+        }
+        if (maxRows < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("落盘阈值不能小于0");
+        }
+        this.codec = codec;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean add(T row) {
+        if (closed) {
+            throw new JDBCException("结果列表已关闭");
+        }
+        if (heap != null) {
+            heap.add(row);
+            size++;
+            if (size == 1 || size % SAMPLE_INTERVAL == 0) {
+                sampledBytes += encode(row);
+                sampledRows++;
+            }
+            if (size > maxRows || sampledBytes * size / sampledRows > maxBytes) {
+                spill();
+            }
+            return true;
+        }
+        append(encode(row));
+        size++;
+        return true;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        if (closed) {
+            throw new JDBCException("结果列表已关闭");
+        }
+        List<T> rows = heap;
+        if (rows != null) {
+            return rows.get(index);
+        }
+        long offset = offsets[index];
+        MappedByteBuffer segment = segments.get((int) (offset >>> SEGMENT_BITS));
+        int position = (int) (offset & SEGMENT_MASK);
+        int length = segment.getInt(position);
+        try {
+            return codec.read(new DataInputStream(new BufferInput(segment.slice(position + 4, length))));
+        } catch (IOException e) {
+            throw new JDBCException("读取落盘结果失败: 第 " + index + " 行", e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return heap == null;
+    }
+
+    // 临时文件已写入的字节数, 未落盘时为 0
+    public long getSpilledBytes() {
+        return writePosition;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        heap = null;
+        segments.clear();
+        offsets = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ColorLogger.logError("关闭落盘文件失败: " + file, e);
+            }
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // 部分系统在映射未释放时不能删除, 退出时再删
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+
+//    落盘: 创建临时文件并写出堆内已有的行, 之后的行直接写入文件
+
+    private void spill() {
+        try {
+            file = Files.createTempFile("sqltool-spill-", ".bin");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            close();
+            throw new JDBCException("创建落盘文件失败", e);
+        }
+        offsets = new long[Math.max(16, size * 2)];
+        List<T> rows = heap;
+        heap = null;
+        int count = size;
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            append(encode(rows.get(i)));
+            size++;
+        }
+    }
+
+    // 序列化到 scratch, 返回字节数
+    private int encode(T row) {
+        scratch.reset();
+        try {
+            codec.write(scratchOut, row);
+            scratchOut.flush();
+        } catch (IOException e) {
+            throw new JDBCException("序列化结果行失败", e);
+        }
+        return scratch.size();
+    }
+
+    // 写入 scratch 中的一行: 4 字节长度 + 数据, 放不下当前段时从下一段开始
+    private void append(int length) {
+        long total = 4L + length;
+        if (total > SEGMENT_SIZE) {
+            throw new JDBCException("单行序列化后超过 " + SEGMENT_SIZE + " 字节");
+        }
+        if ((writePosition & SEGMENT_MASK) + total > SEGMENT_SIZE) {
+            writePosition = (writePosition | SEGMENT_MASK) + 1;
+        }
+        MappedByteBuffer segment = segment((int) (writePosition >>> SEGMENT_BITS));
+        int position = (int) (writePosition & SEGMENT_MASK);
+        segment.putInt(position, length);
+        segment.put(position + 4, scratch.buffer(), 0, length);
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size] = writePosition;
+        writePosition += total;
+    }
+
+    private MappedByteBuffer segment(int index) {
+        while (segments.size() <= index) {
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+            } catch (IOException e) {
+                throw new JDBCException("映射落盘文件失败: " + file, e);
+            }
+        }
+        return segments.get(index);
+    }
+
+    // 直接暴露内部数组, 写入映射段时不再复制
+    private static final class Scratch extends ByteArrayOutputStream {
+        Scratch() {
+            super(256);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+
+//    实体编码: 按字段声明顺序写出每个字段值, 每个值以 1 字节类型标记开头
+//    支持常用基本类型、String、BigDecimal、byte[]、日期时间、UUID 和枚举, 其他可序列化类型使用 Java 序列化
+
+    public static <T> Codec<T> entityCodec(Class<T> entityClass) {
+        EntityMetadata meta = EntityMetadata.of(entityClass);
+        List<EntityMetadata.Property> properties = meta.getProperties();
+        return new Codec<>() {
+            @Override
+            public void write(DataOutput out, T row) throws IOException {
+                for (EntityMetadata.Property property : properties) {
+                    writeValue(out, property.get(row));
+                }
+            }
+
+            @Override
+            public T read(DataInput in) throws IOException {
+                Object[] values = new Object[properties.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(in, properties.get(i).getType());
+                }
+                if (meta.isConstructorBased()) {
+                    return entityClass.cast(meta.newInstance(values));
+                }
+                Object entity = meta.newInstance();
+                for (int i = 0; i < values.length; i++) {
+                    EntityMetadata.Property property = properties.get(i);
+                    if (values[i] != null && property.isWritable()) {
+                        property.set(entity, values[i]);
+                    }
+                }
+                return entityClass.cast(entity);
+            }
+        };
+    }
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte BYTES = 7;
+    private static final byte LOCAL_DATE_TIME = 8;
+    private static final byte LOCAL_DATE = 9;
+    private static final byte INSTANT = 10;
+    private static final byte TIMESTAMP = 11;
+    private static final byte FLOAT = 12;
+    private static final byte SHORT = 13;
+    private static final byte BYTE = 14;
+    private static final byte UUID_VALUE = 15;
+    private static final byte ENUM = 16;
+    private static final byte SERIALIZED = 17;
+
+    static void writeValue(DataOutput out, Object value) throws IOException {
+        switch (value) {
+            case null -> out.writeByte(NULL);
+            case Long v -> {
+                out.writeByte(LONG);
+                out.writeLong(v);
+            }
+            case Integer v -> {
+                out.writeByte(INT);
+                out.writeInt(v);
+            }
+            case Double v -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(v);
+            }
+            case String v -> {
+                out.writeByte(STRING);
+                writeBytes(out, v.getBytes(StandardCharsets.UTF_8));
+            }
+            case Boolean v -> {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(v);
+            }
+            case BigDecimal v -> {
+                out.writeByte(DECIMAL);
+                out.writeInt(v.scale());
+                writeBytes(out, v.unscaledValue().toByteArray());
+            }
+            case byte[] v -> {
+                out.writeByte(BYTES);
+                writeBytes(out, v);
+            }
+            case LocalDateTime v -> {
+                out.writeByte(LOCAL_DATE_TIME);
+                out.writeLong(v.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(v.getNano());
+            }
+            case LocalDate v -> {
+                out.writeByte(LOCAL_DATE);
+                out.writeLong(v.toEpochDay());
+            }
+            case Instant v -> {
+                out.writeByte(INSTANT);
+                out.writeLong(v.getEpochSecond());
+                out.writeInt(v.getNano());
+            }
+            case Timestamp v -> {
+                out.writeByte(TIMESTAMP);
+                out.writeLong(v.getTime());
+                out.writeInt(v.getNanos());
+            }
+            case Float v -> {
+                out.writeByte(FLOAT);
+                out.writeFloat(v);
+            }
+            case Short v -> {
+                out.writeByte(SHORT);
+                out.writeShort(v);
+            }
+            case Byte v -> {
+                out.writeByte(BYTE);
+                out.writeByte(v);
+            }
+            case UUID v -> {
+                out.writeByte(UUID_VALUE);
+                out.writeLong(v.getMostSignificantBits());
+                out.writeLong(v.getLeastSignificantBits());
+            }
+            case Enum<?> v -> {
+                out.writeByte(ENUM);
+                writeBytes(out, v.name().getBytes(StandardCharsets.UTF_8));
+            }
+            case Serializable v -> {
+                out.writeByte(SERIALIZED);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(v);
+                }
+                writeBytes(out, bytes.toByteArray());
+            }
+            default -> throw new JDBCException("不支持落盘的字段类型: " + value.getClass().getName());
+        }
+    }
+
+    // 枚举按声明类型还原
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object readValue(DataInput in, Class<?> type) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case LONG -> in.readLong();
+            case INT -> in.readInt();
+            case DOUBLE -> in.readDouble();
+            case STRING -> new String(readBytes(in), StandardCharsets.UTF_8);
+            case BOOLEAN -> in.readBoolean();
+            case DECIMAL -> {
+                int scale = in.readInt();
+                yield new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+            case BYTES -> readBytes(in);
+            case LOCAL_DATE_TIME -> LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            case LOCAL_DATE -> LocalDate.ofEpochDay(in.readLong());
+            case INSTANT -> Instant.ofEpochSecond(in.readLong(), in.readInt());
+            case TIMESTAMP -> {
+                Timestamp t = new Timestamp(in.readLong());
+                t.setNanos(in.readInt());
+                yield t;
+            }
+            case FLOAT -> in.readFloat();
+            case SHORT -> in.readShort();
+            case BYTE -> in.readByte();
+            case UUID_VALUE -> new UUID(in.readLong(), in.readLong());
+            case ENUM -> Enum.valueOf((Class) type, new String(readBytes(in), StandardCharsets.UTF_8));
+            case SERIALIZED -> {
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    yield objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("反序列化字段失败", e);
+                }
+            }
+            default -> throw new IOException("未知的值类型标记: " + tag);
+        };
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,317 @@
+package SQLTool;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// SQL 执行指标: 按 SQL 模板统计调用次数、错误数、行数和延迟分布
+public class SqlMetrics {
+    private SqlMetrics() {}
+
+    // 最多单独统计的 SQL 模板数, 超出后归入 OTHER; 每个模板的直方图未出现竞争时约 5KB
+    private static final int MAX_STATEMENTS = 1000;
+    private static final String OTHER = "<other>";
+    private static final String MBEAN_NAME = "SQLTool:type=SqlMetrics";
+
+    private static volatile boolean enabled = true;
+    private static final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+    private static final LatencyHistogram acquire = new LatencyHistogram();
+    private static final LatencyHistogram transactions = new LatencyHistogram();
+    private static final LongAdder commits = new LongAdder();
+    private static final LongAdder rollbacks = new LongAdder();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    static void recordQuery(String sql, long nanos, long rowsReturned) {
+        if (!enabled) return;
+        StatementMetrics m = statement(sql);
+        m.calls.increment();
+        m.rowsReturned.add(rowsReturned);
+        m.latency.record(toMicros(nanos));
+    }
+
+    static void recordUpdate(String sql, long nanos, long rowsAffected) {
+        if (!enabled) return;
+        StatementMetrics m = statement(sql);
+        m.calls.increment();
+        m.rowsAffected.add(rowsAffected);
+        m.latency.record(toMicros(nanos));
+    }
+
+    static void recordError(String sql, long nanos) {
+        if (!enabled) return;
+        StatementMetrics m = statement(sql);
+        m.calls.increment();
+        m.errors.increment();
+        m.latency.record(toMicros(nanos));
+    }
+
+    static void recordAcquire(long nanos) {
+        if (!enabled) return;
+        acquire.record(toMicros(nanos));
+    }
+
+    static void recordTransaction(long nanos, boolean committed) {
+        if (!enabled) return;
+        transactions.record(toMicros(nanos));
+        if (committed) {
+            commits.increment();
+        } else {
+            rollbacks.increment();
+        }
+    }
+
+    private static StatementMetrics statement(String sql) {
+        StatementMetrics m = statements.get(sql);
+        if (m != null) {
+            return m;
+        }
+        if (statements.size() >= MAX_STATEMENTS) {
+            return statements.computeIfAbsent(OTHER, k -> new StatementMetrics());
+        }
+        return statements.computeIfAbsent(sql, k -> new StatementMetrics());
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+
+//    指标快照, 按调用次数降序
+
+    public static List<StatementSnapshot> getStatements() {
+        List<StatementSnapshot> list = new ArrayList<>(statements.size());
+        statements.forEach((sql, m) -> list.add(new StatementSnapshot(sql, m.calls.sum(), m.errors.sum(),
+                m.rowsReturned.sum(), m.rowsAffected.sum(), m.latency.snapshot())));
+        list.sort(Comparator.comparingLong(StatementSnapshot::getCalls).reversed());
+        return list;
+    }
+
+    public static StatementSnapshot getStatement(String sql) {
+        StatementMetrics m = statements.get(sql);
+        if (m == null) {
+            return null;
+        }
+        return new StatementSnapshot(sql, m.calls.sum(), m.errors.sum(),
+                m.rowsReturned.sum(), m.rowsAffected.sum(), m.latency.snapshot());
+    }
+
+    public static LatencySnapshot getConnectionAcquire() {
+        return acquire.snapshot();
+    }
+
+    public static LatencySnapshot getTransactions() {
+        return transactions.snapshot();
+    }
+
+    public static long getCommitCount() {
+        return commits.sum();
+    }
+
+    public static long getRollbackCount() {
+        return rollbacks.sum();
+    }
+
+    public static void reset() {
+        statements.clear();
+        acquire.reset();
+        transactions.reset();
+        commits.reset();
+        rollbacks.reset();
+    }
+
+
+//    注册到平台 MBeanServer
+
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MXBeanImpl(), name);
+            }
+        } catch (JMException e) {
+            throw new JDBCException("注册指标MBean失败", e);
+        }
+    }
+
+    public static synchronized void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new JDBCException("注销指标MBean失败", e);
+        }
+    }
+
+    // 单个 SQL 模板的计数器
+    private static final class StatementMetrics {
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rowsReturned = new LongAdder();
+        final LongAdder rowsAffected = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    // 延迟分布快照(微秒)
+    public static final class LatencySnapshot {
+        private final long count;
+        private final double meanMicros;
+        private final long maxMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long p999Micros;
+
+        LatencySnapshot(long count, double meanMicros, long maxMicros, long p50Micros, long p99Micros, long p999Micros) {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.maxMicros = maxMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return meanMicros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getP999Micros() {
+            return p999Micros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1fus p50=%dus p99=%dus p999=%dus max=%dus",
+                    count, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros);
+        }
+    }
+
+    // 单个 SQL 模板的指标快照
+    public static final class StatementSnapshot {
+        private final String sql;
+        private final long calls;
+        private final long errors;
+        private final long rowsReturned;
+        private final long rowsAffected;
+        private final LatencySnapshot latency;
+
+        StatementSnapshot(String sql, long calls, long errors, long rowsReturned, long rowsAffected,
+                          LatencySnapshot latency) {
+            this.sql = sql;
+            this.calls = calls;
+            this.errors = errors;
+            this.rowsReturned = rowsReturned;
+            this.rowsAffected = rowsAffected;
+            this.latency = latency;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRowsReturned() {
+            return rowsReturned;
+        }
+
+        public long getRowsAffected() {
+            return rowsAffected;
+        }
+
+        public LatencySnapshot getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return sql + " calls=" + calls + " errors=" + errors + " rowsReturned=" + rowsReturned
+                    + " rowsAffected=" + rowsAffected + " " + latency;
+        }
+    }
+
+    private static final class MXBeanImpl implements SqlMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return SqlMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean value) {
+            enabled = value;
+        }
+
+        @Override
+        public List<StatementSnapshot> getStatements() {
+            return SqlMetrics.getStatements();
+        }
+
+        @Override
+        public LatencySnapshot getConnectionAcquire() {
+            return SqlMetrics.getConnectionAcquire();
+        }
+
+        @Override
+        public LatencySnapshot getTransactions() {
+            return SqlMetrics.getTransactions();
+        }
+
+        @Override
+        public long getCommitCount() {
+            return SqlMetrics.getCommitCount();
+        }
+
+        @Override
+        public long getRollbackCount() {
+            return SqlMetrics.getRollbackCount();
+        }
+
+        @Override
+        public void reset() {
+            SqlMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package SQLTool;
+
+import java.util.List;
+
+// JMX 管理接口, 注册名为 SQLTool:type=SqlMetrics
+public interface SqlMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    List<SqlMetrics.StatementSnapshot> getStatements();
+
+    SqlMetrics.LatencySnapshot getConnectionAcquire();
+
+    SqlMetrics.LatencySnapshot getTransactions();
+
+    long getCommitCount();
+
+    long getRollbackCount();
+
+    void reset();
+}
@@ -0,0 +1,133 @@
+package SQLTool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 单个连接上的 PreparedStatement LRU 缓存, 以 SQL 文本为键
+final class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final Map<String, PreparedStatement> statements;
+    // 正在使用的缓存语句, 同一 SQL 嵌套执行时不会复用同一个语句对象
+    private final Set<PreparedStatement> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    // 使用中被淘汰的语句, 归还时关闭
+    private final Set<PreparedStatement> evicted = Collections.newSetFromMap(new IdentityHashMap<>());
+    // 准备语句可能访问网络, 用 ReentrantLock 而不是 synchronized, 避免虚拟线程被钉住载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+
+    StatementCache(Connection connection, int maxSize, LongAdder hits, LongAdder misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                if (inUse.contains(eldest.getValue())) {
+                    evicted.add(eldest.getValue());
+                } else {
+                    closeQuietly(eldest.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        lock.lock();
+        try {
+            PreparedStatement ps = statements.get(sql);
+            if (ps != null && !inUse.contains(ps)) {
+                hits.increment();
+                inUse.add(ps);
+                return ps;
+            }
+            misses.increment();
+            if (ps != null) {
+                // 同一 SQL 的语句仍在使用中, 临时创建不缓存的语句
+                return connection.prepareStatement(sql);
+            }
+            ps = connection.prepareStatement(sql);
+            statements.put(sql, ps);
+            inUse.add(ps);
+            return ps;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+//    归还语句, 返回 false 表示该语句不归缓存管理
+
+    boolean release(PreparedStatement ps) {
+        lock.lock();
+        try {
+            if (!inUse.remove(ps)) {
+                return false;
+            }
+            if (evicted.remove(ps)) {
+                closeQuietly(ps);
+                return true;
+            }
+            try {
+                ps.clearParameters();
+                ps.clearBatch();
+            } catch (SQLException e) {
+                statements.values().remove(ps);
+                closeQuietly(ps);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return statements.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+//    连接被回收或失效时关闭全部缓存语句
+
+    void clear() {
+        lock.lock();
+        try {
+            for (PreparedStatement ps : statements.values()) {
+                closeQuietly(ps);
+            }
+            for (PreparedStatement ps : evicted) {
+                closeQuietly(ps);
+            }
+            statements.clear();
+            inUse.clear();
+            evicted.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package SQLTool;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+// 实体表名; 指定 name 时直接使用该表名, 不加全局前缀
+// 编译时由 SQLTool.processor.EntityMapperProcessor 为标注的实体生成映射类
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Table {
+    String name() default "";
+}
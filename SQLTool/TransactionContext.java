@@ -0,0 +1,159 @@
+package SQLTool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// 显式事务上下文: 持有一个事务连接而不依赖 ThreadLocal, 可以在线程(包括虚拟线程)之间传递
+// JDBC 连接不是线程安全的, 上下文上的操作用锁串行执行; 用 ReentrantLock 避免虚拟线程被钉住
+// 未提交就关闭时回滚
+public final class TransactionContext implements AutoCloseable {
+    private final Database database;
+    private final Connection connection;
+    private final long start;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean completed;
+
+    private TransactionContext(Database database, Connection connection, long start) {
+        this.database = database;
+        this.connection = connection;
+        this.start = start;
+    }
+
+
+//    从当前 Database 实例的连接池借出连接并开启事务
+
+    public static TransactionContext begin() {
+        return begin(Database.current());
+    }
+
+    public static TransactionContext begin(Database database) {
+        long start = System.nanoTime();
+        try {
+            return new TransactionContext(database, database.openTransaction(), start);
+        } catch (SQLException e) {
+            throw new JDBCException("开启事务失败", e);
+        }
+    }
+
+    public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) {
+        lock.lock();
+        try {
+            checkActive();
+            return database.query(connection, sql, mapper, params);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int executeUpdate(String sql, Object... params) {
+        lock.lock();
+        try {
+            checkActive();
+            return database.executeUpdate(connection, sql, params);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int[] executeBatch(String sql, List<Object[]> paramsList) {
+        return executeBatch(sql, paramsList, database.getBatchSize());
+    }
+
+    // 事务中不按块提交, 返回每块影响行数
+    public int[] executeBatch(String sql, List<Object[]> paramsList, int chunkSize) {
+        lock.lock();
+        try {
+            checkActive();
+            return database.executeBatch(connection, sql, paramsList, Function.identity(), chunkSize, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int executeDDL(String ddl) {
+        lock.lock();
+        try {
+            checkActive();
+            return database.executeDDL(connection, ddl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+//    注册提交后执行的操作, 回滚时丢弃
+
+    public void afterCommit(Runnable action) {
+        lock.lock();
+        try {
+            checkActive();
+            afterCommit.add(action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void commit() {
+        List<Runnable> hooks;
+        lock.lock();
+        try {
+            checkActive();
+            completed = true;
+            hooks = new ArrayList<>(afterCommit);
+            afterCommit.clear();
+            database.endTransaction(connection, start, true);
+        } catch (SQLException e) {
+            throw new JDBCException("提交事务失败", e);
+        } finally {
+            lock.unlock();
+        }
+        for (Runnable hook : hooks) {
+            Database.runHook(hook);
+        }
+    }
+
+    public void rollback() {
+        lock.lock();
+        try {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            afterCommit.clear();
+            database.endTransaction(connection, start, false);
+        } catch (SQLException e) {
+            throw new JDBCException("回滚事务失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Database getDatabase() {
+        return database;
+    }
+
+    public boolean isActive() {
+        lock.lock();
+        try {
+            return !completed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        rollback();
+    }
+
+    private void checkActive() {
+        if (completed) {
+            throw new JDBCException("事务已经结束");
+        }
+    }
+}
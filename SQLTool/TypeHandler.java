@@ -0,0 +1,19 @@
+package SQLTool;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+// 类型处理器: 用类型化的 setXxx/getXxx 绑定参数和读取列, 避免驱动在运行时推断类型
+public interface TypeHandler<T> {
+    // value 不为 null
+    void bind(PreparedStatement ps, int index, T value) throws SQLException;
+
+    // 列值为 NULL 时返回 null
+    T read(ResultSet rs, int column) throws SQLException;
+
+    // 绑定 NULL 时使用的 java.sql.Types 类型, Types.NULL 表示交给驱动推断
+    default int sqlType() {
+        return Types.NULL;
+    }
+}
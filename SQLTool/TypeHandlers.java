@@ -0,0 +1,281 @@
+package SQLTool;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// 类型处理器注册表: 按 Java 类型查找参数绑定和列读取方式
+// 内置常用类型、java.time、枚举(按名称存为字符串)和 UUID(按数据库存为 uuid 或字符串); 其他类型使用 setObject/getObject
+// 自定义处理器应在启动时注册, 注册后已缓存的实体字段处理器会重新解析
+public class TypeHandlers {
+    private TypeHandlers() {}
+
+    private static final Map<Class<?>, TypeHandler<?>> builtIn = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, TypeHandler<?>> custom = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, TypeHandler<?>> resolved = new ConcurrentHashMap<>();
+    private static volatile int version;
+
+    static final TypeHandler<Object> OBJECT = handler(Types.NULL, PreparedStatement::setObject, ResultSet::getObject);
+
+    static {
+        builtIn(handler(Types.VARCHAR, PreparedStatement::setString, ResultSet::getString), String.class);
+        builtIn(handler(Types.BIGINT, PreparedStatement::setLong, (rs, i) -> {
+            long v = rs.getLong(i);
+            return rs.wasNull() ? null : v;
+        }), Long.class, long.class);
+        builtIn(handler(Types.INTEGER, PreparedStatement::setInt, (rs, i) -> {
+            int v = rs.getInt(i);
+            return rs.wasNull() ? null : v;
+        }), Integer.class, int.class);
+        builtIn(handler(Types.DOUBLE, PreparedStatement::setDouble, (rs, i) -> {
+            double v = rs.getDouble(i);
+            return rs.wasNull() ? null : v;
+        }), Double.class, double.class);
+        builtIn(handler(Types.BOOLEAN, PreparedStatement::setBoolean, (rs, i) -> {
+            boolean v = rs.getBoolean(i);
+            return rs.wasNull() ? null : v;
+        }), Boolean.class, boolean.class);
+        builtIn(handler(Types.SMALLINT, PreparedStatement::setShort, (rs, i) -> {
+            short v = rs.getShort(i);
+            return rs.wasNull() ? null : v;
+        }), Short.class, short.class);
+        builtIn(handler(Types.TINYINT, PreparedStatement::setByte, (rs, i) -> {
+            byte v = rs.getByte(i);
+            return rs.wasNull() ? null : v;
+        }), Byte.class, byte.class);
+        builtIn(handler(Types.REAL, PreparedStatement::setFloat, (rs, i) -> {
+            float v = rs.getFloat(i);
+            return rs.wasNull() ? null : v;
+        }), Float.class, float.class);
+        builtIn(handler(Types.DECIMAL, PreparedStatement::setBigDecimal, ResultSet::getBigDecimal), BigDecimal.class);
+        builtIn(handler(Types.VARBINARY, PreparedStatement::setBytes, ResultSet::getBytes), byte[].class);
+        builtIn(handler(Types.TIMESTAMP, PreparedStatement::setTimestamp, ResultSet::getTimestamp), Timestamp.class);
+        // java.time 转为 JDBC 日期类型绑定, 不依赖驱动对 JSR-310 的支持
+        builtIn(handler(Types.TIMESTAMP,
+                (ps, i, v) -> ps.setTimestamp(i, Timestamp.valueOf(v)),
+                (rs, i) -> {
+                    Timestamp t = rs.getTimestamp(i);
+                    return t == null ? null : t.toLocalDateTime();
+                }), LocalDateTime.class);
+        builtIn(handler(Types.DATE,
+                (ps, i, v) -> ps.setDate(i, Date.valueOf(v)),
+                (rs, i) -> {
+                    Date d = rs.getDate(i);
+                    return d == null ? null : d.toLocalDate();
+                }), LocalDate.class);
+        builtIn(handler(Types.TIMESTAMP,
+                (ps, i, v) -> ps.setTimestamp(i, Timestamp.from(v)),
+                (rs, i) -> {
+                    Timestamp t = rs.getTimestamp(i);
+                    return t == null ? null : t.toInstant();
+                }), Instant.class);
+        // java.sql.Time 不保留小数秒, 以标准类型显式绑定
+        builtIn(handler(Types.TIME,
+                (ps, i, v) -> ps.setObject(i, v, Types.TIME),
+                (rs, i) -> rs.getObject(i, LocalTime.class)), LocalTime.class);
+        builtIn(handler(Types.TIMESTAMP_WITH_TIMEZONE,
+                (ps, i, v) -> ps.setObject(i, v, Types.TIMESTAMP_WITH_TIMEZONE),
+                (rs, i) -> rs.getObject(i, OffsetDateTime.class)), OffsetDateTime.class);
+        // 有原生 uuid 类型的数据库(PostgreSQL、H2)用 setObject 绑定, 其他数据库存为字符串
+        // 方言取自执行语句的连接, 不依赖线程当前绑定的实例
+        // NULL 交给驱动推断类型, 原生 uuid 列不接受 VARCHAR 类型的 NULL
+        builtIn(handler(Types.NULL,
+                (ps, i, v) -> {
+                    if (hasNativeUuid(Dialect.of(ps.getConnection()))) {
+                        ps.setObject(i, v);
+                    } else {
+                        ps.setString(i, v.toString());
+                    }
+                },
+                (rs, i) -> {
+                    Object v = rs.getObject(i);
+                    return v == null || v instanceof UUID ? (UUID) v : UUID.fromString(v.toString());
+                }), UUID.class);
+    }
+
+    private static boolean hasNativeUuid(Dialect dialect) {
+        return dialect == Dialect.POSTGRESQL || dialect == Dialect.H2;
+    }
+
+    private static void builtIn(TypeHandler<?> handler, Class<?>... types) {
+        for (Class<?> type : types) {
+            builtIn.put(type, handler);
+        }
+    }
+
+    // 注册自定义处理器, 覆盖内置处理器; 基本类型字段仍使用内置的免装箱读写
+    public static synchronized <T> void register(Class<T> type, TypeHandler<T> handler) {
+        custom.put(type, handler);
+        resolved.clear();
+        version++;
+    }
+
+
+//    注册转换器: 值先转换为 sqlType 再用其处理器绑定, 读取时反向转换
+
+    public static <T, S> void register(Class<T> type, Class<S> sqlType, Function<? super T, ? extends S> toSql,
+                                       Function<? super S, ? extends T> fromSql) {
+        TypeHandler<S> target = forType(sqlType);
+        register(type, new TypeHandler<>() {
+            @Override
+            public void bind(PreparedStatement ps, int index, T value) throws SQLException {
+                S converted = toSql.apply(value);
+                if (converted == null) {
+                    bindNull(ps, index, target);
+                } else {
+                    target.bind(ps, index, converted);
+                }
+            }
+
+            @Override
+            public T read(ResultSet rs, int column) throws SQLException {
+                S value = target.read(rs, column);
+                return value == null ? null : fromSql.apply(value);
+            }
+
+            @Override
+            public int sqlType() {
+                return target.sqlType();
+            }
+        });
+    }
+
+    public static synchronized void unregister(Class<?> type) {
+        custom.remove(type);
+        resolved.clear();
+        version++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TypeHandler<T> forType(Class<T> type) {
+        TypeHandler<?> handler = resolved.get(type);
+        if (handler == null) {
+            handler = resolve(type);
+            resolved.put(type, handler);
+        }
+        return (TypeHandler<T>) handler;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static TypeHandler<?> resolve(Class<?> type) {
+        TypeHandler<?> handler = custom.get(type);
+        if (handler == null) {
+            handler = builtIn.get(type);
+        }
+        if (handler == null) {
+            // 带方法体的枚举常量是枚举类的匿名子类
+            Class<?> enumType = type.isEnum() ? type
+                    : type.getSuperclass() != null && type.getSuperclass().isEnum() ? type.getSuperclass() : null;
+            if (enumType != null) {
+                handler = custom.containsKey(enumType) ? custom.get(enumType) : enumHandler((Class) enumType);
+            }
+        }
+        return handler != null ? handler : OBJECT;
+    }
+
+    private static <E extends Enum<E>> TypeHandler<E> enumHandler(Class<E> type) {
+        return handler(Types.VARCHAR,
+                (ps, i, v) -> ps.setString(i, v.name()),
+                (rs, i) -> {
+                    String name = rs.getString(i);
+                    return name == null ? null : Enum.valueOf(type, name);
+                });
+    }
+
+
+//    按处理器绑定参数, 值为 null 时按处理器的 SQL 类型绑定 NULL
+
+    @SuppressWarnings("unchecked")
+    public static void bind(PreparedStatement ps, int index, TypeHandler<?> handler, Object value) throws SQLException {
+        if (value == null) {
+            bindNull(ps, index, handler);
+        } else {
+            ((TypeHandler<Object>) handler).bind(ps, index, value);
+        }
+    }
+
+    // 未指定处理器时按值的实际类型查找
+    static void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setObject(index, null);
+        } else {
+            bind(ps, index, forType(value.getClass()), value);
+        }
+    }
+
+    private static void bindNull(PreparedStatement ps, int index, TypeHandler<?> handler) throws SQLException {
+        if (handler.sqlType() == Types.NULL) {
+            ps.setObject(index, null);
+        } else {
+            ps.setNull(index, handler.sqlType());
+        }
+    }
+
+    private static <T> TypeHandler<T> handler(int sqlType, Binder<T> binder, Reader<T> reader) {
+        return new TypeHandler<>() {
+            @Override
+            public void bind(PreparedStatement ps, int index, T value) throws SQLException {
+                binder.bind(ps, index, value);
+            }
+
+            @Override
+            public T read(ResultSet rs, int column) throws SQLException {
+                return reader.read(rs, column);
+            }
+
+            @Override
+            public int sqlType() {
+                return sqlType;
+            }
+        };
+    }
+
+    // 一组类型的处理器, 注册表变化后重新解析; 供实体元数据和生成的映射类缓存处理器, 返回的数组不应修改
+    public static final class Resolved {
+        private final Class<?>[] types;
+        private volatile Snapshot snapshot;
+
+        public Resolved(Class<?>... types) {
+            this.types = types.clone();
+        }
+
+        public TypeHandler<?>[] get() {
+            int current = version;
+            Snapshot s = snapshot;
+            if (s == null || s.version != current) {
+                TypeHandler<?>[] handlers = new TypeHandler<?>[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    handlers[i] = forType(types[i]);
+                }
+                s = new Snapshot(current, handlers);
+                snapshot = s;
+            }
+            return s.handlers;
+        }
+
+        private record Snapshot(int version, TypeHandler<?>[] handlers) {}
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, int index, T value) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(ResultSet rs, int column) throws SQLException;
+    }
+}
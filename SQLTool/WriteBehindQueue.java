@@ -0,0 +1,209 @@
+package SQLTool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 写入队列: 多线程提交的插入先进入队列, 后台线程攒够 maxBatchRows 行或等待 maxDelayMillis 后
+// 按 Database 实例和实体类分组, 每组用一条批量语句在一个事务中写入, 把多次提交合并为一次
+// 队列满时 insert 阻塞(背压); close 停止接收并同步写完剩余的行
+// 入队线程通过 Database.call 绑定了实例时写入该实例, 分片实体在入队时确定所在分片, 否则写入默认实例
+// 每组只写入一个实例, 批量写入是一个事务, 失败后逐行重试不会重复写入已提交的行
+public class WriteBehindQueue implements AutoCloseable {
+    private final int maxBatchRows;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread flusher;
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile boolean closed;
+
+    public WriteBehindQueue() {
+        this(500, 5, 10_000);
+    }
+
+    public WriteBehindQueue(int maxBatchRows, long maxDelayMillis, int capacity) {
+        if (maxBatchRows <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("批量行数和队列容量必须大于0");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("等待时间不能小于0");
+        }
+        this.maxBatchRows = maxBatchRows;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = new Thread(this::runFlusher, "SQLTool-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+
+//    入队插入, 返回的 future 在该行写入(提交)后完成, 失败时异常完成
+
+    public <T> CompletableFuture<Void> insert(T entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("实体为空");
+        }
+        if (closed) {
+            throw new JDBCException("写入队列已关闭");
+        }
+        Pending pending = new Pending(entity, target(entity));
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JDBCException("等待写入队列时被中断", e);
+        }
+        // 与 close 竞争: 关闭后仍留在队列中的行不会再被写入
+        if (closed && queue.remove(pending)) {
+            throw new JDBCException("写入队列已关闭");
+        }
+        return pending.future;
+    }
+
+
+//    在调用线程上立即写入当前队列中的全部行
+
+    public void flush() {
+        List<Pending> batch = new ArrayList<>();
+        while (queue.drainTo(batch, maxBatchRows) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    // 停止接收新行, 等待后台线程退出后同步写完剩余的行
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void runFlusher() {
+        List<Pending> batch = new ArrayList<>(maxBatchRows);
+        while (!closed) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt + maxDelayNanos;
+                while (batch.size() < maxBatchRows) {
+                    queue.drainTo(batch, maxBatchRows - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchRows || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 已取出的行照常写入, 剩余的行由 close 写入
+                closed = true;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+
+//    按 Database 实例和实体类分组写入; 批量失败时逐行重试, 只让出错的行失败
+
+    private void write(List<Pending> batch) {
+        Map<Database, Map<Class<?>, List<Pending>>> groups = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            groups.computeIfAbsent(pending.database, db -> new LinkedHashMap<>())
+                    .computeIfAbsent(pending.entity.getClass(), c -> new ArrayList<>())
+                    .add(pending);
+        }
+        for (Map.Entry<Database, Map<Class<?>, List<Pending>>> byDatabase : groups.entrySet()) {
+            Database db = byDatabase.getKey();
+            for (List<Pending> group : byDatabase.getValue().values()) {
+                List<Object> rows = new ArrayList<>(group.size());
+                for (Pending pending : group) {
+                    rows.add(pending.entity);
+                }
+                try {
+                    runOn(db, () -> DMLTool.batchInsert(rows, rows.size(), 0));
+                    for (Pending pending : group) {
+                        pending.future.complete(null);
+                    }
+                } catch (RuntimeException e) {
+                    ColorLogger.logError("写入队列批量写入失败, 改为逐行写入", e);
+                    for (Pending pending : group) {
+                        try {
+                            runOn(db, () -> DMLTool.insert(pending.entity));
+                            pending.future.complete(null);
+                        } catch (RuntimeException rowError) {
+                            pending.future.completeExceptionally(rowError);
+                        }
+                    }
+                }
+                flushedRows.addAndGet(group.size());
+                batchCount.incrementAndGet();
+            }
+        }
+    }
+
+    // 写入的实例: 已绑定的实例、分片实体所在的分片, 或 null(默认实例)
+    private static Database target(Object entity) {
+        if (Database.isBound()) {
+            return Database.current();
+        }
+        Sharding.Spec spec = Sharding.route(entity.getClass());
+        return spec == null ? null : spec.shardOfEntity(entity);
+    }
+
+    private static void runOn(Database db, Runnable action) {
+        if (db == null) {
+            action.run();
+        } else {
+            db.run(action);
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private static final class Pending {
+        final Object entity;
+        final Database database;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(Object entity, Database database) {
+            this.entity = entity;
+            this.database = database;
+        }
+    }
+}
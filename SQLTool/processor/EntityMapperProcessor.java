@@ -0,0 +1,458 @@
+package SQLTool.processor;
+
+import SQLTool.ChangeCharTool;
+import SQLTool.Column;
+import SQLTool.EntityAccessors;
+import SQLTool.Id;
+import SQLTool.Table;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 注解处理器: 为 @Table 实体生成 <实体名>_Mapper, 实现 EntityAccessor, 直接访问字段、getter/setter 和构造器
+// 字段不可访问(private 且没有 getter/setter)或没有可用构造器时只给出警告, 运行时回退到反射
+// @Id/@Column 只在 @Table 实体内有意义, 一并声明并认领, 避免 -Xlint 报告无人处理的注解
+@SupportedAnnotationTypes({"SQLTool.Table", "SQLTool.Id", "SQLTool.Column"})
+public class EntityMapperProcessor extends AbstractProcessor {
+    // 基本类型的 ResultSet/PreparedStatement 方法名后缀和默认值
+    private static final Map<TypeKind, String[]> PRIMITIVES = Map.of(
+            TypeKind.LONG, new String[]{"Long", "0L", "java.lang.Long"},
+            TypeKind.INT, new String[]{"Int", "0", "java.lang.Integer"},
+            TypeKind.DOUBLE, new String[]{"Double", "0d", "java.lang.Double"},
+            TypeKind.FLOAT, new String[]{"Float", "0f", "java.lang.Float"},
+            TypeKind.BOOLEAN, new String[]{"Boolean", "false", "java.lang.Boolean"},
+            TypeKind.SHORT, new String[]{"Short", "(short) 0", "java.lang.Short"},
+            TypeKind.BYTE, new String[]{"Byte", "(byte) 0", "java.lang.Byte"});
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+            if (!(element instanceof TypeElement type)) {
+                continue;
+            }
+            Entity entity = analyze(type);
+            if (entity == null) {
+                continue;
+            }
+            try {
+                write(entity);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "生成实体映射类失败: " + e.getMessage(), type);
+            }
+        }
+        return true;
+    }
+
+    private void skip(Element element, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "未生成实体映射类, 运行时使用反射: " + reason, element);
+    }
+
+
+//    解析实体: 字段按声明顺序, 与 EntityMetadata 的反射解析结果一致
+
+    private Entity analyze(TypeElement type) {
+        boolean record = type.getKind() == ElementKind.RECORD;
+        if (type.getKind() != ElementKind.CLASS && !record) {
+            skip(type, "只支持类和记录类");
+            return null;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getTypeParameters().isEmpty()) {
+            skip(type, "不支持抽象类或泛型类");
+            return null;
+        }
+        for (Element e = type; e instanceof TypeElement t; e = t.getEnclosingElement()) {
+            if (t.getModifiers().contains(Modifier.PRIVATE)
+                    || (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC) && !record
+                    && t == type)) {
+                skip(type, "实体类必须是非 private 的顶层类或静态嵌套类");
+                return null;
+            }
+            if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                skip(type, "不支持局部类或匿名类");
+                return null;
+            }
+        }
+
+        Entity entity = new Entity(type, record);
+        Table table = type.getAnnotation(Table.class);
+        entity.tableName = table.name().isEmpty() ? null : table.name();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(type.getEnclosedElements());
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            Prop prop = new Prop(field, entity.props.size());
+            if (prop.type.getKind() == TypeKind.CHAR || prop.type.getKind() == TypeKind.TYPEVAR) {
+                skip(field, "不支持的字段类型: " + prop.type);
+                return null;
+            }
+            Column column = field.getAnnotation(Column.class);
+            prop.column = column != null ? column.name() : ChangeCharTool.toSnakeCase(prop.name);
+            if (field.getAnnotation(Id.class) != null) {
+                entity.idIndex = prop.index;
+            }
+            boolean accessible = !field.getModifiers().contains(Modifier.PRIVATE);
+            if (record) {
+                prop.getter = prop.name + "()";
+            } else if (accessible) {
+                prop.getter = prop.name;
+                if (!field.getModifiers().contains(Modifier.FINAL)) {
+                    prop.setter = prop.name + " = ";
+                }
+            } else {
+                String suffix = Character.toUpperCase(prop.name.charAt(0)) + prop.name.substring(1);
+                ExecutableElement getter = findMethod(methods, "get" + suffix, null);
+                if (getter == null && prop.type.getKind() == TypeKind.BOOLEAN) {
+                    getter = findMethod(methods, "is" + suffix, null);
+                }
+                if (getter == null || !types().isSameType(getter.getReturnType(), prop.type)) {
+                    skip(field, "private 字段没有 getter: " + prop.name);
+                    return null;
+                }
+                prop.getter = getter.getSimpleName() + "()";
+                ExecutableElement setter = findMethod(methods, "set" + suffix, prop.type);
+                if (setter != null) {
+                    prop.setter = setter.getSimpleName() + "(";
+                }
+            }
+            entity.props.add(prop);
+        }
+        if (entity.idIndex < 0) {
+            for (Prop prop : entity.props) {
+                if (prop.name.equals("id")) {
+                    entity.idIndex = prop.index;
+                }
+            }
+        }
+
+        if (record) {
+            entity.constructorBased = true;
+            return entity;
+        }
+        boolean allWritable = entity.props.stream().allMatch(p -> p.setter != null);
+        boolean noArg = false;
+        boolean allArgs = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            List<? extends VariableElement> params = constructor.getParameters();
+            if (params.isEmpty()) {
+                noArg = true;
+            } else if (params.size() == entity.props.size()) {
+                boolean match = true;
+                for (int i = 0; i < params.size(); i++) {
+                    match &= types().isSameType(types().erasure(params.get(i).asType()),
+                            types().erasure(entity.props.get(i).type));
+                }
+                allArgs |= match;
+            }
+        }
+        if (noArg && allWritable) {
+            entity.constructorBased = false;
+        } else if (allArgs) {
+            entity.constructorBased = true;
+        } else {
+            skip(type, "需要可访问的无参构造器(且所有字段可写)或与字段顺序一致的全参构造器");
+            return null;
+        }
+        return entity;
+    }
+
+    private ExecutableElement findMethod(List<ExecutableElement> methods, String name, TypeMirror parameter) {
+        for (ExecutableElement method : methods) {
+            if (!method.getSimpleName().contentEquals(name) || method.getModifiers().contains(Modifier.PRIVATE)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            List<? extends VariableElement> params = method.getParameters();
+            if (parameter == null ? params.isEmpty()
+                    : params.size() == 1 && types().isSameType(params.getFirst().asType(), parameter)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private javax.lang.model.util.Types types() {
+        return processingEnv.getTypeUtils();
+    }
+
+
+//    生成映射类源码
+
+    private void write(Entity entity) throws IOException {
+        TypeElement type = entity.type;
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String binarySimple = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String generatedName = EntityAccessors.generatedName(packageName, binarySimple);
+        String simpleName = generatedName.substring(generatedName.lastIndexOf('.') + 1);
+        String e = type.getQualifiedName().toString();
+        List<Prop> props = entity.props;
+
+        List<String> columns = props.stream().map(p -> p.column).toList();
+        String columnList = String.join(", ", columns);
+        String placeholders = String.join(", ", java.util.Collections.nCopies(columns.size(), "?"));
+        String updateSet = String.join(" = ?, ", columns) + " = ?";
+
+        StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("// 由 SQLTool.processor.EntityMapperProcessor 根据 ").append(e).append(" 生成, 不要手工修改\n");
+        out.append("@SuppressWarnings(\"unchecked\")\n");
+        out.append("public final class ").append(simpleName).append(" implements SQLTool.EntityAccessor<").append(e).append("> {\n");
+        out.append("    public static final String COLUMN_LIST = ").append(literal(columnList)).append(";\n");
+        out.append("    public static final String UPDATE_SET = ").append(literal(updateSet)).append(";\n");
+        String select = null;
+        String insert = null;
+        if (entity.tableName != null) {
+            select = "select " + columnList + " from " + entity.tableName;
+            insert = "insert into " + entity.tableName + " (" + columnList + ") values (" + placeholders + ")";
+            out.append("    public static final String SELECT_SQL = ").append(literal(select)).append(";\n");
+            out.append("    public static final String INSERT_SQL = ").append(literal(insert)).append(";\n");
+        }
+        out.append("    private static final String[] FIELD_NAMES = {")
+                .append(String.join(", ", props.stream().map(p -> literal(p.name)).toList())).append("};\n");
+        out.append("    private static final String[] COLUMN_NAMES = {")
+                .append(String.join(", ", props.stream().map(p -> literal(p.column)).toList())).append("};\n");
+        out.append("    private static final Class<?>[] FIELD_TYPES = {")
+                .append(String.join(", ", props.stream().map(p -> erasure(p) + ".class").toList())).append("};\n");
+        // 字段类型处理器只在注册表变化时重新解析, 读写每个值时不再按类型查找
+        out.append("    private static final SQLTool.TypeHandlers.Resolved HANDLERS = new SQLTool.TypeHandlers.Resolved(FIELD_TYPES);\n\n");
+        boolean usesHandlers = props.stream().anyMatch(p -> !p.primitive());
+        String handlers = usesHandlers ? "SQLTool.TypeHandler<?>[] handlers = HANDLERS.get();\n        " : "";
+
+        method(out, "Class<" + e + "> entityClass()", "return " + e + ".class;");
+        method(out, "String tableName()", "return " + literal(entity.tableName) + ";");
+        method(out, "String selectSql()", "return " + (select == null ? "null" : "SELECT_SQL") + ";");
+        method(out, "String insertSql()", "return " + (insert == null ? "null" : "INSERT_SQL") + ";");
+        method(out, "String updateSetClause()", "return UPDATE_SET;");
+        method(out, "String[] fieldNames()", "return FIELD_NAMES.clone();");
+        method(out, "String[] columnNames()", "return COLUMN_NAMES.clone();");
+        method(out, "Class<?>[] fieldTypes()", "return FIELD_TYPES.clone();");
+        method(out, "int idIndex()", "return " + entity.idIndex + ";");
+        method(out, "boolean constructorBased()", "return " + entity.constructorBased + ";");
+
+        // newInstance()
+        method(out, e + " newInstance()", entity.constructorBased
+                ? "throw new SQLTool.JDBCException(\"实体没有无参构造器: " + e + "\");"
+                : "return new " + e + "();");
+
+        // newInstance(Object[])
+        StringBuilder body = new StringBuilder();
+        if (entity.constructorBased) {
+            List<String> args = new ArrayList<>();
+            for (Prop p : props) {
+                args.add(fromObject(p, "args[" + p.index + "]"));
+            }
+            body.append("return new ").append(e).append("(").append(String.join(", ", args)).append(");");
+        } else {
+            body.append(e).append(" e = new ").append(e).append("();\n");
+            for (Prop p : props) {
+                String value = "args[" + p.index + "]";
+                // 基本类型字段值为 null 时保留构造器中的默认值
+                String line = p.primitive()
+                        ? "if (" + value + " != null) " + assign(p, "(" + p.primitiveInfo()[2] + ") " + value)
+                        : assign(p, fromObject(p, value));
+                body.append("        ").append(line).append("\n");
+            }
+            body.append("        return e;");
+        }
+        method(out, e + " newInstance(Object[] args)", body.toString());
+
+        // get
+        body = new StringBuilder("switch (index) {\n");
+        for (Prop p : props) {
+            body.append("            case ").append(p.index).append(": return e.").append(p.getter).append(";\n");
+        }
+        body.append("            default: throw new IndexOutOfBoundsException(\"字段下标越界: \" + index);\n        }");
+        method(out, "Object get(" + e + " e, int index)", body.toString());
+
+        // set
+        body = new StringBuilder("switch (index) {\n");
+        for (Prop p : props) {
+            body.append("            case ").append(p.index).append(": ");
+            if (p.setter == null) {
+                body.append("throw new SQLTool.JDBCException(\"字段不可写: ").append(p.name).append("\");\n");
+            } else {
+                body.append(assign(p, fromObject(p, "value"))).append(" return;\n");
+            }
+        }
+        body.append("            default: throw new IndexOutOfBoundsException(\"字段下标越界: \" + index);\n        }");
+        method(out, "void set(" + e + " e, int index, Object value)", body.toString());
+
+        // isWritable
+        List<String> writable = props.stream().filter(p -> p.setter != null).map(p -> "case " + p.index + ":").toList();
+        method(out, "boolean isWritable(int index)", writable.isEmpty() ? "return false;"
+                : "switch (index) {\n            " + String.join(" ", writable)
+                + " return true;\n            default: return false;\n        }");
+
+        // mapRow
+        body = new StringBuilder(handlers);
+        if (entity.constructorBased) {
+            List<String> args = new ArrayList<>();
+            for (Prop p : props) {
+                String c = "columns[" + p.index + "]";
+                body.append(p.declared()).append(" v").append(p.index).append(" = ").append(c).append(" > 0 ? ")
+                        .append(read(p, c)).append(" : ").append(p.primitive() ? p.primitiveInfo()[1] : "null")
+                        .append(";\n        ");
+                args.add("v" + p.index);
+            }
+            body.append("return new ").append(e).append("(").append(String.join(", ", args)).append(");");
+        } else {
+            body.append(e).append(" e = new ").append(e).append("();\n");
+            for (Prop p : props) {
+                String c = "columns[" + p.index + "]";
+                body.append("        if (").append(c).append(" > 0) ").append(assign(p, read(p, c))).append("\n");
+            }
+            body.append("        return e;");
+        }
+        method(out, e + " mapRow(java.sql.ResultSet rs, int[] columns) throws java.sql.SQLException", body.toString());
+
+        // bind
+        body = new StringBuilder(handlers);
+        for (Prop p : props) {
+            int index = p.index + 1;
+            if (p.index > 0) {
+                body.append("\n        ");
+            }
+            if (p.primitive()) {
+                body.append("ps.set").append(p.primitiveInfo()[0]).append("(").append(index).append(", e.")
+                        .append(p.getter).append(");");
+            } else {
+                body.append("SQLTool.TypeHandlers.bind(ps, ").append(index).append(", handlers[").append(p.index)
+                        .append("], e.").append(p.getter).append(");");
+            }
+        }
+        method(out, "void bind(java.sql.PreparedStatement ps, " + e + " e) throws java.sql.SQLException",
+                body.isEmpty() ? "" : body.toString());
+        out.setLength(out.length() - 1);
+        out.append("}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(generatedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    private static void method(StringBuilder out, String signature, String body) {
+        out.append("    @Override\n    public ").append(signature).append(" {\n");
+        if (!body.isEmpty()) {
+            out.append("        ").append(body).append("\n");
+        }
+        out.append("    }\n\n");
+    }
+
+    // e.setX(v); 或 e.x = v;
+    private static String assign(Prop p, String value) {
+        return p.setter.endsWith("(") ? "e." + p.setter + value + ");" : "e." + p.setter + value + ";";
+    }
+
+    // Object 转为字段类型, 基本类型为 null 时取默认值
+    private String fromObject(Prop p, String value) {
+        if (p.primitive()) {
+            String[] info = p.primitiveInfo();
+            return "(" + value + " == null ? " + info[1] + " : (" + info[2] + ") " + value + ")";
+        }
+        return cast(p, value);
+    }
+
+    private String read(Prop p, String column) {
+        if (p.primitive()) {
+            return "rs.get" + p.primitiveInfo()[0] + "(" + column + ")";
+        }
+        return cast(p, "handlers[" + p.index + "].read(rs, " + column + ")");
+    }
+
+    // Object 值转为字段的声明类型, 字段本身为 Object 时不加转换, 避免多余的强制转换警告
+    private String cast(Prop p, String value) {
+        return erasure(p).equals("java.lang.Object") ? value : "(" + p.declared() + ") " + value;
+    }
+
+    private String erasure(Prop p) {
+        return types().erasure(p.type).toString();
+    }
+
+    private static String literal(String s) {
+        if (s == null) {
+            return "null";
+        }
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static final class Entity {
+        final TypeElement type;
+        final boolean record;
+        final List<Prop> props = new ArrayList<>();
+        String tableName;
+        int idIndex = -1;
+        boolean constructorBased;
+
+        Entity(TypeElement type, boolean record) {
+            this.type = type;
+            this.record = record;
+        }
+    }
+
+    private final class Prop {
+        final String name;
+        final int index;
+        final TypeMirror type;
+        String column;
+        // 读取表达式(不含 "e."): x、getX() 或记录类的 x()
+        String getter;
+        // 写入前缀(不含 "e."): "x = " 或 "setX(", 不可写时为 null
+        String setter;
+
+        Prop(VariableElement field, int index) {
+            this.name = field.getSimpleName().toString();
+            this.index = index;
+            this.type = field.asType();
+        }
+
+        boolean primitive() {
+            return type.getKind().isPrimitive();
+        }
+
+        String[] primitiveInfo() {
+            return PRIMITIVES.get(type.getKind());
+        }
+
+        // 源码中的声明类型, 带类型注解时退回到擦除类型
+        String declared() {
+            String declared = type.toString();
+            return declared.contains("@") ? erasure(this) : declared;
+        }
+    }
+}
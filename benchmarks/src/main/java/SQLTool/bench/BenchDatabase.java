@@ -0,0 +1,52 @@
+package SQLTool.bench;
+
+import SQLTool.ColorLogger;
+import SQLTool.DBConnectionTool;
+import SQLTool.DMLTool;
+import SQLTool.PoolConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// H2 内存数据库夹具
+final class BenchDatabase {
+    private BenchDatabase() {}
+
+    static final String URL = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    private static final String COLUMNS = "id bigint primary key, user_name varchar(64), age int, "
+            + "email varchar(128), score double";
+    private static final int LOAD_CHUNK = 10_000;
+
+    static void start() {
+        ColorLogger.disable();
+        DMLTool.init(URL, "sa", "", new PoolConfig().setMinSize(2).setMaxSize(8));
+        DMLTool.dropTable(BenchUser.class);
+        DMLTool.createTable(BenchUser.class, COLUMNS);
+        DBConnectionTool.executeDDL("create index if not exists idx_bench_age on "
+                + DMLTool.getTableName(BenchUser.class) + " (age)");
+    }
+
+    static void populate(int rows) {
+        for (int from = 0; from < rows; from += LOAD_CHUNK) {
+            DMLTool.batchInsert(users(from, Math.min(LOAD_CHUNK, rows - from)));
+        }
+    }
+
+    static void truncate() {
+        DBConnectionTool.executeDDL("truncate table " + DMLTool.getTableName(BenchUser.class));
+    }
+
+    static List<BenchUser> users(long firstId, int count) {
+        List<BenchUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new BenchUser(firstId + i));
+        }
+        return users;
+    }
+
+    static void stop() {
+        DMLTool.dropTable(BenchUser.class);
+        DBConnectionTool.shutdown();
+        ColorLogger.enable();
+    }
+}
@@ -0,0 +1,41 @@
+package SQLTool.bench;
+
+// 基准测试实体
+public class BenchUser {
+    private long id;
+    private String userName;
+    private int age;
+    private String email;
+    private double score;
+
+    public BenchUser() {
+    }
+
+    public BenchUser(long id) {
+        this.id = id;
+        this.userName = "user-" + id;
+        this.age = (int) (id % 100);
+        this.email = "user" + id + "@example.com";
+        this.score = id * 0.5;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,28 @@
+package SQLTool.bench;
+
+import SQLTool.ChangeCharTool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// 驼峰与下划线变量名互转
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeCharToolBenchmark {
+    public String camel = "userAccountCreatedAt";
+    public String snake = "user_account_created_at";
+
+    @Benchmark
+    public String toSnakeCase() {
+        return ChangeCharTool.toSnakeCase(camel);
+    }
+
+    @Benchmark
+    public String toCamelCase() {
+        return ChangeCharTool.toCamelCase(snake);
+    }
+}
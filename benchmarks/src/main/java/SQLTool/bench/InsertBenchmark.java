@@ -0,0 +1,65 @@
+package SQLTool.bench;
+
+import SQLTool.DMLTool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 单条插入与不同批量大小的批量插入
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchDatabase.start();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTable() {
+        BenchDatabase.truncate();
+        nextId = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchDatabase.stop();
+    }
+
+    @Benchmark
+    public int insert() {
+        return DMLTool.insert(new BenchUser(nextId++));
+    }
+
+    @Benchmark
+    public int batchInsert(BatchState state) {
+        return DMLTool.batchInsert(state.batch);
+    }
+
+    // 每次调用前准备一批主键不重复的实体
+    @State(Scope.Benchmark)
+    public static class BatchState {
+        @Param({"100", "1000", "10000"})
+        public int batchSize;
+
+        private long nextId;
+        List<BenchUser> batch;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nextId = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void prepareBatch() {
+            batch = BenchDatabase.users(nextId, batchSize);
+            nextId += batchSize;
+        }
+    }
+}
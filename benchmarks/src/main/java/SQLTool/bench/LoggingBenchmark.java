@@ -0,0 +1,63 @@
+package SQLTool.bench;
+
+import SQLTool.ColorLogger;
+import SQLTool.DMLTool;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 日志关闭、同步输出、异步输出三种模式下的单条读写开销
+// 控制台输出重定向到空流, 只衡量日志本身的格式化与同步开销
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"off", "sync", "async"})
+    public String logging;
+
+    private PrintStream originalOut;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchDatabase.start();
+        BenchDatabase.populate(ROWS);
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        switch (logging) {
+            case "sync" -> ColorLogger.enable();
+            case "async" -> {
+                ColorLogger.enable();
+                ColorLogger.enableAsync(8192, ColorLogger.OverflowPolicy.DROP);
+            }
+            default -> ColorLogger.disable();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ColorLogger.disableAsync();
+        System.setOut(originalOut);
+        BenchDatabase.stop();
+    }
+
+    @Benchmark
+    public List<BenchUser> findById() {
+        nextId = (nextId + 7919) % ROWS;
+        return DMLTool.findBy(BenchUser.class, "id", nextId);
+    }
+
+    @Benchmark
+    public int update() {
+        long id = nextId++ % ROWS;
+        return DMLTool.update(new BenchUser(id), "id", id);
+    }
+}
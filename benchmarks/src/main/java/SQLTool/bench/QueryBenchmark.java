@@ -0,0 +1,64 @@
+package SQLTool.bench;
+
+import SQLTool.DMLTool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// findAll / findBy / streamAll 及 EntityMapper 映射开销
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private long lookupId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchDatabase.start();
+        BenchDatabase.populate(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchDatabase.stop();
+    }
+
+    @Benchmark
+    public List<BenchUser> findAll() {
+        return DMLTool.findAll(BenchUser.class);
+    }
+
+    @Benchmark
+    public List<BenchUser> findAllPage() {
+        return DMLTool.findAll(BenchUser.class, 100, rows / 2);
+    }
+
+    // 主键点查
+    @Benchmark
+    public List<BenchUser> findById() {
+        lookupId = (lookupId + 7919) % rows;
+        return DMLTool.findBy(BenchUser.class, "id", lookupId);
+    }
+
+    // 返回约 1% 的行, 以映射开销为主
+    @Benchmark
+    public List<BenchUser> findByAge() {
+        return DMLTool.findBy(BenchUser.class, "age", 42);
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole bh) {
+        try (Stream<BenchUser> stream = DMLTool.streamAll(BenchUser.class)) {
+            stream.forEach(bh::consume);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package SQLTool.bench;
+
+import SQLTool.DMLTool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// 按主键整行更新
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+    private static final int ROWS = 10_000;
+
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchDatabase.start();
+        BenchDatabase.populate(ROWS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchDatabase.stop();
+    }
+
+    @Benchmark
+    public int update() {
+        long id = nextId++ % ROWS;
+        BenchUser user = new BenchUser(id);
+        user.setUserName("renamed-" + nextId);
+        return DMLTool.update(user, "id", id);
+    }
+}
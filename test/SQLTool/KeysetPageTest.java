@@ -0,0 +1,79 @@
+package SQLTool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 键集分页: 排序字段含 NULL 时逐页读取的结果与一次性排序查询一致
+class KeysetPageTest {
+    public static class Score {
+        private long id;
+        private Integer points;
+
+        public Score() {}
+
+        Score(long id, Integer points) {
+            this.id = id;
+            this.points = points;
+        }
+    }
+
+    private static Database db;
+
+    @BeforeAll
+    static void setUp() {
+        ColorLogger.disable();
+        db = new Database("keyset");
+        db.init("jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1", "sa", "");
+        db.run(() -> {
+            DMLTool.createTable(Score.class, "id bigint primary key, points int");
+            Integer[] points = {5, null, 3, null, 5, 1, null, 3, 8};
+            for (int i = 0; i < points.length; i++) {
+                DMLTool.insert(new Score(i + 1, points[i]));
+            }
+        });
+    }
+
+    @AfterAll
+    static void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void ascendingWithNulls() {
+        assertEquals(expected("points asc, id asc"), pagedIds(SortKey.asc("points"), SortKey.asc("id")));
+    }
+
+    @Test
+    void descendingWithNulls() {
+        assertEquals(expected("points desc, id desc"), pagedIds(SortKey.desc("points"), SortKey.desc("id")));
+    }
+
+    @Test
+    void nullableSecondKey() {
+        assertEquals(expected("id asc, points asc"), pagedIds(SortKey.asc("id"), SortKey.asc("points")));
+    }
+
+    private static List<Long> expected(String orderBy) {
+        return db.call(() -> DBConnectionTool.query("select id from " + EntityMetadata.of(Score.class).getTableName()
+                + " order by " + orderBy, rs -> rs.getLong(1)));
+    }
+
+    private static List<Long> pagedIds(SortKey... keys) {
+        return db.call(() -> {
+            List<Long> ids = new ArrayList<>();
+            String token = null;
+            do {
+                KeysetPage<Score> page = DMLTool.findPage(Score.class, 2, token, keys);
+                page.getItems().forEach(s -> ids.add(s.id));
+                token = page.getNextToken();
+            } while (token != null);
+            return ids;
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package SQLTool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 投影到 DTO: 实体字段用 @Column 改名时, DTO 同名字段仍能取到值
+class ProjectionTest {
+    public static class Member {
+        private long id;
+        @Column(name = "full_name")
+        private String name;
+        private int age;
+
+        public Member() {}
+
+        Member(long id, String name, int age) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+        }
+    }
+
+    public static class MemberView {
+        private long id;
+        private String name;
+    }
+
+    public record MemberRecord(long id, String name, int age) {}
+
+    private static Database db;
+
+    @BeforeAll
+    static void setUp() {
+        ColorLogger.disable();
+        db = new Database("proj");
+        db.init("jdbc:h2:mem:proj;DB_CLOSE_DELAY=-1", "sa", "");
+        db.run(() -> {
+            DMLTool.createTable(Member.class, "id bigint primary key, full_name varchar(20), age int");
+            DMLTool.insert(new Member(1, "alice", 30));
+        });
+    }
+
+    @AfterAll
+    static void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void renamedColumnIsMappedToDtoField() {
+        List<MemberView> views = db.call(() -> DMLTool.findAllAs(Member.class, MemberView.class));
+        assertEquals(1, views.size());
+        assertEquals(1L, views.get(0).id);
+        assertEquals("alice", views.get(0).name);
+    }
+
+    @Test
+    void renamedColumnIsMappedToRecordComponent() {
+        List<MemberRecord> records = db.call(() -> DMLTool.findByAs(Member.class, MemberRecord.class, "id", 1L));
+        assertEquals(List.of(new MemberRecord(1, "alice", 30)), records);
+    }
+}
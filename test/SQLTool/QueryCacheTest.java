@@ -0,0 +1,154 @@
+package SQLTool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// 查询缓存: 不同 Database 实例上相同的 SQL 不共用缓存条目; 返回的实体是副本; 事务回滚后同样失效
+// 每个用例使用自己的实体表, 避免表版本号互相影响
+class QueryCacheTest {
+    public static class CachedUser {
+        private long id;
+        private String name;
+        private int age;
+
+        public CachedUser() {}
+
+        CachedUser(long id, String name, int age) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name + ":" + age;
+        }
+    }
+
+    public static class CachedOrder {
+        private long id;
+        private String item;
+
+        public CachedOrder() {}
+
+        CachedOrder(long id, String item) {
+            this.id = id;
+            this.item = item;
+        }
+    }
+
+    public static class CachedItem {
+        private long id;
+        private String label;
+
+        public CachedItem() {}
+
+        CachedItem(long id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+    }
+
+    public static class CachedNote {
+        private long id;
+        private String text;
+
+        public CachedNote() {}
+
+        CachedNote(long id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private static Database s1;
+    private static Database s2;
+
+    @BeforeAll
+    static void setUp() {
+        ColorLogger.disable();
+        s1 = new Database("qc1");
+        s2 = new Database("qc2");
+        s1.init("jdbc:h2:mem:qc1;DB_CLOSE_DELAY=-1", "sa", "");
+        s2.init("jdbc:h2:mem:qc2;DB_CLOSE_DELAY=-1", "sa", "");
+        for (Database db : List.of(s1, s2)) {
+            db.run(() -> {
+                DMLTool.createTable(CachedUser.class, "id bigint primary key, name varchar(20), age int");
+                DMLTool.createTable(CachedOrder.class, "id bigint primary key, item varchar(20)");
+                DMLTool.createTable(CachedItem.class, "id bigint primary key, label varchar(20)");
+                DMLTool.createTable(CachedNote.class, "id bigint primary key, text varchar(20)");
+            });
+        }
+        s1.run(() -> DMLTool.insert(new CachedUser(1, "on-s1", 10)));
+        s2.run(() -> DMLTool.insert(new CachedUser(2, "on-s2", 20)));
+        s1.run(() -> DMLTool.insert(new CachedOrder(1, "a")));
+        s2.run(() -> DMLTool.insert(new CachedOrder(2, "b")));
+        s1.run(() -> DMLTool.insert(new CachedItem(1, "original")));
+        s1.run(() -> DMLTool.insert(new CachedNote(1, "kept")));
+        QueryCache.enable(CachedUser.class);
+        QueryCache.enable(CachedOrder.class);
+        QueryCache.enable(CachedItem.class);
+        QueryCache.enable(CachedNote.class);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        QueryCache.disable(CachedUser.class);
+        QueryCache.disable(CachedOrder.class);
+        QueryCache.disable(CachedItem.class);
+        QueryCache.disable(CachedNote.class);
+        s1.shutdown();
+        s2.shutdown();
+    }
+
+    @Test
+    void sameSqlOnTwoDatabasesIsCachedSeparately() {
+        for (int i = 0; i < 2; i++) {
+            assertEquals("[1:on-s1:10]", s1.call(() -> DMLTool.findAll(CachedUser.class)).toString());
+            assertEquals("[2:on-s2:20]", s2.call(() -> DMLTool.findAll(CachedUser.class)).toString());
+        }
+        assertEquals(1, s2.call(() -> DMLTool.count(CachedUser.class, Criteria.of(CachedUser.class).eq("id", 2L))));
+    }
+
+    @Test
+    void invalidateOnlyAffectsItsOwnDatabase() {
+        assertEquals(1, s1.call(() -> DMLTool.findAll(CachedOrder.class)).size());
+        assertEquals(1, s2.call(() -> DMLTool.findAll(CachedOrder.class)).size());
+        s2.run(() -> DMLTool.insert(new CachedOrder(3, "c")));
+        assertEquals(1, s1.call(() -> DMLTool.findAll(CachedOrder.class)).size());
+        assertEquals(2, s2.call(() -> DMLTool.findAll(CachedOrder.class)).size());
+    }
+
+    @Test
+    void modifyingReturnedEntityDoesNotChangeCache() {
+        CachedItem first = s1.call(() -> DMLTool.findBy(CachedItem.class, "id", 1L)).get(0);
+        first.label = "changed";
+        CachedItem second = s1.call(() -> DMLTool.findBy(CachedItem.class, "id", 1L)).get(0);
+        assertNotSame(first, second);
+        assertEquals("original", second.label);
+    }
+
+    // 事务中的写入在回滚后同样使缓存条目失效: 条目被清除, 下一次查询重新访问数据库
+    @Test
+    void rollbackInvalidatesCache() {
+        assertEquals(1, s1.call(() -> DMLTool.findAll(CachedNote.class)).size());
+        assertEquals(1, s1.call(() -> QueryCache.getStats(CachedNote.class)).getSize());
+        assertThrows(JDBCException.class, () -> s1.doInTransaction(() -> {
+            DMLTool.insert(new CachedNote(2, "rolled-back"));
+            // 推迟到事务结束后失效, 回滚前条目仍在
+            assertEquals(1, QueryCache.getStats(CachedNote.class).getSize());
+            throw new IllegalStateException("rollback");
+        }));
+        assertEquals(0, s1.call(() -> QueryCache.getStats(CachedNote.class)).getSize());
+        long misses = s1.call(() -> QueryCache.getStats(CachedNote.class)).getMisses();
+        assertEquals(1, s1.call(() -> DMLTool.findAll(CachedNote.class)).size());
+        assertEquals(misses + 1, s1.call(() -> QueryCache.getStats(CachedNote.class)).getMisses());
+    }
+}
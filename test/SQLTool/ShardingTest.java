@@ -0,0 +1,137 @@
+package SQLTool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// 分片路由: 同一个键值不论以哪种数值类型传入都落在同一分片, 枚举按名称路由
+class ShardingTest {
+    public static class Ledger {
+        private long id;
+        private String memo;
+
+        public Ledger() {}
+
+        Ledger(long id, String memo) {
+            this.id = id;
+            this.memo = memo;
+        }
+    }
+
+    public enum Region { NORTH, SOUTH, EAST, WEST }
+
+    public static class Branch {
+        private Region region;
+        private String name;
+    }
+
+    public static class Opaque {
+        private Object key;
+    }
+
+    private static Database s1;
+    private static Database s2;
+    private static Database s3;
+
+    @BeforeAll
+    static void setUp() {
+        ColorLogger.disable();
+        s1 = new Database("shard1");
+        s2 = new Database("shard2");
+        s1.init("jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1", "sa", "");
+        s3 = new Database("shard3");
+        s2.init("jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1", "sa", "");
+        s3.init("jdbc:h2:mem:shard3;DB_CLOSE_DELAY=-1", "sa", "");
+        Sharding.register(Ledger.class, "id", List.of(s1, s2, s3));
+        Sharding.register(Branch.class, "region", List.of(s1, s2, s3));
+        DMLTool.createTable(Ledger.class, "id bigint primary key, memo varchar(20)");
+        for (long id = -5; id <= 5; id++) {
+            DMLTool.insert(new Ledger(id, "m" + id));
+        }
+        DMLTool.insert(new Ledger(10, null));
+        DMLTool.insert(new Ledger(11, null));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        Sharding.unregister(Ledger.class);
+        Sharding.unregister(Branch.class);
+        s1.shutdown();
+        s2.shutdown();
+        s3.shutdown();
+    }
+
+    @Test
+    void integerAndLongKeysRouteToSameShard() {
+        for (int id = -5; id <= 5; id++) {
+            assertSame(Sharding.shardFor(Ledger.class, (long) id), Sharding.shardFor(Ledger.class, id));
+            assertEquals(1, DMLTool.findBy(Ledger.class, "id", id).size(), "findBy " + id);
+            assertEquals(1, DMLTool.find(Criteria.of(Ledger.class).eq("id", id)).size(), "criteria " + id);
+        }
+    }
+
+    @Test
+    void enumKeysRouteByName() {
+        for (Region region : Region.values()) {
+            assertSame(Sharding.shardFor(Branch.class, region.name()), Sharding.shardFor(Branch.class, region));
+        }
+        assertSame(List.of(s1, s2, s3).get(Math.floorMod(spread("NORTH".hashCode()), 3)),
+                Sharding.shardFor(Branch.class, Region.NORTH));
+    }
+
+    @Test
+    void shardedSortKeepsDatabaseNullOrder() {
+        // H2 中 NULL 为最小值: 升序在最前, 降序在最后
+        List<Ledger> asc = DMLTool.findAll(Ledger.class, "memo", true, 20, 0);
+        List<Ledger> desc = DMLTool.findAll(Ledger.class, "memo", false, 20, 0);
+        assertEquals(13, asc.size());
+        assertEquals(Arrays.asList(null, null, "m-1"), memos(asc).subList(0, 3));
+        assertEquals(Arrays.asList("m5", "m4"), memos(desc).subList(0, 2));
+        assertEquals(Arrays.asList(null, null), memos(desc).subList(11, 13));
+        List<Ledger> criteria = DMLTool.find(Criteria.of(Ledger.class).orderBy(SortKey.desc("memo")));
+        assertEquals(memos(desc), memos(criteria));
+    }
+
+    @Test
+    void shardedGroupsAreOrderedByGroupValue() {
+        Map<String, Long> counts = DMLTool.countBy(Ledger.class, "memo", null);
+        List<String> expected = new ArrayList<>(counts.keySet());
+        expected.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        assertEquals(expected, new ArrayList<>(counts.keySet()));
+        assertEquals(2L, counts.get(null));
+        assertEquals(expected, DMLTool.<Ledger, String, Long>groupBy(Ledger.class, "memo", "id", null).stream()
+                .map(GroupStats::getKey).toList());
+    }
+
+    @Test
+    void nullsHighComparatorMatchesPostgresOrder() {
+        List<Ledger> rows = new ArrayList<>(List.of(new Ledger(1, "a"), new Ledger(2, null), new Ledger(3, "b")));
+        rows.sort(Criteria.of(Ledger.class).orderBy(SortKey.asc("memo")).comparator(false));
+        assertEquals(Arrays.asList("a", "b", null), memos(rows));
+        rows.sort(Criteria.of(Ledger.class).orderBy(SortKey.desc("memo")).comparator(false));
+        assertEquals(Arrays.asList(null, "b", "a"), memos(rows));
+    }
+
+    @Test
+    void keyWithoutStableHashIsRejected() {
+        assertThrows(JDBCException.class, () -> Sharding.register(Opaque.class, "key", List.of(s1, s2)));
+    }
+
+    private static List<String> memos(List<Ledger> rows) {
+        return rows.stream().map(row -> row.memo).toList();
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,52 @@
+package SQLTool;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// UUID 的绑定方式取决于执行语句的连接所属的数据库, 与线程当前绑定的实例无关
+class TypeHandlersTest {
+    @Test
+    void uuidBindingFollowsStatementConnection() throws Exception {
+        UUID value = UUID.randomUUID();
+        List<String> calls = new ArrayList<>();
+        TypeHandler<UUID> handler = TypeHandlers.forType(UUID.class);
+        handler.bind(statement("jdbc:postgresql://db/app", PgConnection.class, calls), 1, value);
+        handler.bind(statement("jdbc:mysql://db/app", MysqlConnection.class, calls), 1, value);
+        assertEquals(List.of("setObject " + value, "setString " + value), calls);
+    }
+
+    interface PgConnection extends Connection {}
+
+    interface MysqlConnection extends Connection {}
+
+    // 只实现 getConnection().getMetaData().getURL() 和参数绑定的语句代理, 记录调用的绑定方法
+    private static PreparedStatement statement(String url, Class<? extends Connection> connectionType, List<String> calls) {
+        DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (name, args) -> name.equals("getURL") ? url : null);
+        Connection connection = proxy(connectionType, (name, args) -> name.equals("getMetaData") ? metaData : null);
+        return proxy(PreparedStatement.class, (name, args) -> {
+            if (name.equals("getConnection")) {
+                return connection;
+            }
+            calls.add(name + " " + args[1]);
+            return null;
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(TypeHandlersTest.class.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> handler.invoke(method.getName(), args)));
+    }
+}
@@ -0,0 +1,107 @@
+package SQLTool.processor;
+
+import SQLTool.ColorLogger;
+import SQLTool.DMLTool;
+import SQLTool.Database;
+import SQLTool.EntityAccessors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 注解处理器: 用 -Xlint:all 编译带注解的实体不产生警告, 生成的 <实体名>_Mapper 被 EntityAccessors 找到并用于读写
+// 库本身以 <proc>none</proc> 构建, 这里在运行时调用编译器生成映射类
+class EntityMapperProcessorTest {
+    private static final String ENTITY = """
+            package gen;
+
+            import SQLTool.Column;
+            import SQLTool.Id;
+            import SQLTool.Table;
+            import java.math.BigDecimal;
+
+            @Table(name = "gen_account")
+            public class Account {
+                @Id private long accountNo;
+                @Column(name = "holder") private String name;
+                private BigDecimal balance;
+
+                public Account() {}
+
+                public Account(long accountNo, String name, BigDecimal balance) {
+                    this.accountNo = accountNo;
+                    this.name = name;
+                    this.balance = balance;
+                }
+
+                public long getAccountNo() { return accountNo; }
+                public void setAccountNo(long accountNo) { this.accountNo = accountNo; }
+                public String getName() { return name; }
+                public void setName(String name) { this.name = name; }
+                public BigDecimal getBalance() { return balance; }
+                public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+                @Override
+                public String toString() {
+                    return accountNo + ":" + name + ":" + balance;
+                }
+            }
+            """;
+
+    @Test
+    void generatedMapperRoundTrips(@TempDir Path dir) throws Exception {
+        Path source = dir.resolve("src/gen/Account.java");
+        Path classes = dir.resolve("classes");
+        Files.createDirectories(source.getParent());
+        Files.createDirectories(classes);
+        Files.writeString(source, ENTITY);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+            List<String> options = List.of("-Xlint:all", "-classpath", System.getProperty("java.class.path"),
+                    "-processor", EntityMapperProcessor.class.getName(), "-d", classes.toString());
+            boolean compiled = compiler.getTask(null, files, diagnostics, options, null,
+                    files.getJavaFileObjects(source)).call();
+            assertTrue(compiled, diagnostics.getDiagnostics().toString());
+        }
+        List<Diagnostic<? extends JavaFileObject>> warnings = diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() != Diagnostic.Kind.NOTE).toList();
+        assertEquals(List.of(), warnings);
+        assertTrue(Files.exists(classes.resolve("gen/Account_Mapper.class")));
+
+        ColorLogger.disable();
+        Database db = new Database("mapper");
+        db.init("jdbc:h2:mem:mapper;DB_CLOSE_DELAY=-1", "sa", "");
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> entityClass = loader.loadClass("gen.Account");
+            assertNotNull(EntityAccessors.find(entityClass));
+            assertEquals("gen.Account_Mapper", EntityAccessors.find(entityClass).getClass().getName());
+            Object account = entityClass.getConstructor(long.class, String.class, BigDecimal.class)
+                    .newInstance(7L, "alice", new BigDecimal("12.50"));
+            List<?> found = db.call(() -> {
+                DMLTool.createTable(entityClass, "account_no bigint primary key, holder varchar(20), balance decimal(10, 2)");
+                DMLTool.insert(account);
+                return DMLTool.findBy(entityClass, "accountNo", 7L);
+            });
+            assertEquals("[7:alice:12.50]", found.toString());
+        } finally {
+            db.shutdown();
+        }
+    }
+}